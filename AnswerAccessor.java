@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only access to one respondent's answers, indexed by question and
+ * answer position.  Grading and tabulation are written against this
+ * interface rather than {@link ResponseSet}, so they do not depend on
+ * how the answers are held.
+ */
+public interface AnswerAccessor {
+
+    /**
+     * Returns the number of questions answers are held for.
+     */
+    int questionCount();
+
+    /**
+     * Returns the number of answers given to the specified question, or 0
+     * if there is no entry for it.
+     *
+     * @param question zero based question index
+     * @return number of answers
+     */
+    int answerCount(int question);
+
+    /**
+     * Returns a single answer.
+     *
+     * @param question zero based question index
+     * @param k zero based answer index within the question
+     * @return the answer string
+     */
+    String answer(int question, int k);
+
+    /**
+     * Returns all answers to the specified question.  The default
+     * implementation collects them into a new list; implementations that
+     * already hold a list may return a read-only view instead.
+     *
+     * @param question zero based question index
+     * @return list of answers, never null
+     */
+    default List<String> answers(int question) {
+        int n = answerCount(question);
+        List<String> list = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            list.add(answer(question, k));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the milliseconds the respondent spent answering the
+     * specified question, or -1 if no time was recorded.  The default
+     * implementation records no times.
+     *
+     * @param question zero based question index
+     * @return answer time in milliseconds, or -1
+     */
+    default int answerMillis(int question) {
+        return -1;
+    }
+}
\ No newline at end of file
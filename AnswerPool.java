@@ -0,0 +1,76 @@
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Global pool used to deduplicate answer strings.  Response sets hold
+ * many copies of the same short answers ("A", "True", repeated short
+ * answers) and deserialization creates a new String for each of them.
+ * Passing answers through {@link #canonical(String)} makes equal answers
+ * share one instance.  Entries are weakly referenced so answers that are
+ * no longer held by any response set can be garbage collected.
+ * <p>
+ * The pool is split into stripes, each with its own lock, so response
+ * sets loaded in parallel rarely wait for each other.  Answers longer
+ * than {@link #MAX_POOLED_LENGTH} characters, such as essays, seldom
+ * repeat and are returned as they are.
+ */
+public final class AnswerPool {
+    /** Longest answer that is pooled. */
+    static final int MAX_POOLED_LENGTH = 64;
+    private static final int STRIPES = 64;
+    private static final Stripe[] POOL = new Stripe[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            POOL[i] = new Stripe();
+        }
+    }
+
+    private AnswerPool() {
+    }
+
+    private static final class Stripe {
+        final Map<String, WeakReference<String>> answers = new WeakHashMap<>();
+    }
+
+    /**
+     * Returns the pooled instance equal to the given answer, adding the
+     * answer to the pool if no such instance exists yet.  Long answers
+     * are returned unpooled.
+     *
+     * @param answer the answer string, may be null
+     * @return a canonical instance equal to {@code answer}
+     */
+    public static String canonical(String answer) {
+        if (answer == null || answer.length() > MAX_POOLED_LENGTH) {
+            return answer;
+        }
+        int h = answer.hashCode();
+        Stripe stripe = POOL[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            WeakReference<String> ref = stripe.answers.get(answer);
+            String pooled = ref == null ? null : ref.get();
+            if (pooled != null) {
+                Metrics.ANSWER_POOL.hit();
+                return pooled;
+            }
+            Metrics.ANSWER_POOL.miss();
+            stripe.answers.put(answer, new WeakReference<>(answer));
+            return answer;
+        }
+    }
+
+    /**
+     * Returns the number of distinct answers currently pooled.
+     */
+    public static int size() {
+        int size = 0;
+        for (Stripe stripe : POOL) {
+            synchronized (stripe) {
+                size += stripe.answers.size();
+            }
+        }
+        return size;
+    }
+}
\ No newline at end of file
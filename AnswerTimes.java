@@ -0,0 +1,91 @@
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Helpers for the per-question answer times recorded while a survey or
+ * test is taken interactively.  Times are kept as whole milliseconds,
+ * one int per question, in {@link ResponseSet}.
+ */
+public final class AnswerTimes {
+
+    private AnswerTimes() {
+    }
+
+    /**
+     * Converts the time elapsed since a {@link System#nanoTime} reading to
+     * whole milliseconds, saturating at {@link Integer#MAX_VALUE}.
+     */
+    public static int millisSince(long startNanos) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, millis));
+    }
+
+    /**
+     * Returns the recorded answer times for one question in ascending
+     * order.  Respondents without a recorded time are skipped.
+     *
+     * @param responseSets the responses to examine
+     * @param question zero based question index
+     * @return sorted answer times in milliseconds
+     */
+    public static int[] sortedMillis(List<? extends AnswerAccessor> responseSets, int question) {
+        int[] times = new int[responseSets.size()];
+        int n = 0;
+        for (AnswerAccessor rs : responseSets) {
+            int t = rs.answerMillis(question);
+            if (t >= 0) {
+                times[n++] = t;
+            }
+        }
+        times = Arrays.copyOf(times, n);
+        Arrays.sort(times);
+        return times;
+    }
+
+    /**
+     * Returns the nearest-rank percentile of sorted values.
+     *
+     * @param sorted values in ascending order, not empty
+     * @param p percentile between 0 and 1
+     */
+    public static int percentile(int[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Prints the p50, p90 and p99 answer times of one question.  Nothing
+     * is printed when no respondent has a recorded time, so tabulations
+     * of older responses are unchanged.
+     *
+     * @param responseSets the responses being tabulated
+     * @param question zero based question index
+     * @param out destination for the summary line
+     */
+    public static void printSummary(List<? extends AnswerAccessor> responseSets, int question,
+                                    PrintWriter out) {
+        printSummary(sortedMillis(responseSets, question), out);
+    }
+
+    /**
+     * Prints the p50, p90 and p99 of answer times already sorted, as
+     * {@link #sortedMillis} returns them.  Nothing is printed when there
+     * are none.
+     *
+     * @param times answer times in ascending order
+     * @param out destination for the summary line
+     */
+    public static void printSummary(int[] times, PrintWriter out) {
+        if (times.length == 0) {
+            return;
+        }
+        out.printf("Answer time: p50 %s, p90 %s, p99 %s (%d timed)%n",
+                seconds(percentile(times, 0.50)), seconds(percentile(times, 0.90)),
+                seconds(percentile(times, 0.99)), times.length);
+    }
+
+    private static String seconds(int millis) {
+        return String.format("%.1f s", millis / 1000.0);
+    }
+}
\ No newline at end of file
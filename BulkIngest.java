@@ -0,0 +1,398 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-interactive counterpart to {@link Survey#takeSurvey} and
+ * {@link Test#takeTest}.  Reads pre-recorded answer sheets from a file,
+ * validates each one against the questions with
+ * {@link Question#validateAnswers} and saves valid sheets as response
+ * sets through the normal response path.
+ * <p>
+ * Two formats are supported, chosen by file extension:
+ * <ul>
+ *   <li>{@code .csv}: one sheet per line and one field per question.
+ *       Fields may be quoted with double quotes.  Several answers to the
+ *       same question are separated by {@code |}.</li>
+ *   <li>{@code .jsonl}: one JSON array per line with one element per
+ *       question.  Each element is a string or an array of strings.</li>
+ * </ul>
+ * A sheet may start with one extra field or string element holding the
+ * respondent ID, so the response set is indexed under it and can be
+ * found with {@link ResponseSet#findByRespondent}.  An empty ID leaves
+ * the sheet anonymous.
+ */
+public class BulkIngest {
+    /** Maximum number of rejected sheets described in the report. */
+    private static final int MAX_REPORTED_REJECTS = 20;
+
+    /**
+     * Summary of one ingest run.
+     */
+    public static class Report {
+        private int read;
+        private int accepted;
+        private final List<String> rejects = new ArrayList<>();
+        private int rejectCount;
+        private long elapsedNanos;
+
+        public int getRead() {
+            return read;
+        }
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getRejected() {
+            return rejectCount;
+        }
+
+        /**
+         * Returns descriptions of the first rejected sheets.
+         */
+        public List<String> getRejects() {
+            return new ArrayList<>(rejects);
+        }
+
+        public double getSheetsPerSecond() {
+            return elapsedNanos == 0 ? 0 : read / (elapsedNanos / 1e9);
+        }
+
+        private void reject(int line, String reason) {
+            rejectCount++;
+            if (rejects.size() < MAX_REPORTED_REJECTS) {
+                rejects.add("Line " + line + ": " + reason);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Read %d sheets in %.2f s (%.0f sheets/s): %d accepted, %d rejected.",
+                    read, elapsedNanos / 1e9, getSheetsPerSecond(), accepted, rejectCount));
+            for (String r : rejects) {
+                sb.append(System.lineSeparator()).append(r);
+            }
+            if (rejectCount > rejects.size()) {
+                sb.append(System.lineSeparator()).append("... ")
+                        .append(rejectCount - rejects.size()).append(" more rejects not shown");
+            }
+            return sb.toString();
+        }
+    }
+
+    private BulkIngest() {
+    }
+
+    /**
+     * Ingests answer sheets for a survey.
+     *
+     * @param survey the survey the sheets answer
+     * @param answerFile CSV or JSONL file of answer sheets
+     * @param responseDir directory to save response sets to
+     * @return a report of the run
+     * @throws IOException if the answer file cannot be read or a response
+     *                     set cannot be saved
+     */
+    public static Report ingest(Survey survey, File answerFile, String responseDir) throws IOException {
+        return ingest(survey.getName(), survey.getVersion(), survey.getQuestions(), null, answerFile, responseDir);
+    }
+
+    /**
+     * Ingests answer sheets for a test.  Each accepted sheet is graded
+     * onto the test's {@link Leaderboard}.
+     *
+     * @see #ingest(Survey, File, String)
+     */
+    public static Report ingest(Test test, File answerFile, String responseDir) throws IOException {
+        List<Question> questions = new ArrayList<>();
+        for (TestQuestion tq : test.getQuestions()) {
+            questions.add(tq.getQuestion());
+        }
+        return ingest(test.getName(), test.getVersion(), questions, test, answerFile, responseDir);
+    }
+
+    /**
+     * @param test the test answered, or null for a survey
+     */
+    private static Report ingest(String name, int version, List<Question> questions, Test test,
+                                 File answerFile, String responseDir) throws IOException {
+        boolean json = answerFile.getName().toLowerCase().endsWith(".jsonl");
+        Report report = new Report();
+        long start = System.nanoTime();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(answerFile), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                report.read++;
+                List<List<String>> answers;
+                try {
+                    answers = json ? parseJsonLine(line) : parseCsvLine(line);
+                } catch (IllegalArgumentException e) {
+                    report.reject(lineNo, e.getMessage());
+                    continue;
+                }
+                String respondentId = null;
+                if (answers.size() == questions.size() + 1) {
+                    List<String> id = answers.remove(0);
+                    if (id.size() != 1) {
+                        report.reject(lineNo, "Respondent ID must be a single value.");
+                        continue;
+                    }
+                    respondentId = id.get(0);
+                }
+                String error = validate(questions, answers);
+                if (error != null) {
+                    report.reject(lineNo, error);
+                    continue;
+                }
+                for (int i = 0; i < questions.size(); i++) {
+                    answers.set(i, questions.get(i).normalizeAnswers(answers.get(i)));
+                }
+                ResponseSet responses = new ResponseSet(name, answers, version, null, respondentId);
+                File file;
+                try {
+                    file = responses.saveToUniqueFile(responseDir);
+                } catch (SubmissionFilter.DuplicateException e) {
+                    report.reject(lineNo, e.getMessage());
+                    continue;
+                }
+                if (test != null) {
+                    Leaderboard.record(new File(responseDir), test, responses, file.getName());
+                }
+                report.accepted++;
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    /**
+     * Returns a description of the first problem with the sheet, or null
+     * if it is valid.
+     */
+    private static String validate(List<Question> questions, List<List<String>> answers) {
+        if (answers.size() != questions.size()) {
+            return "Expected " + questions.size() + " questions but found " + answers.size() + ".";
+        }
+        for (int i = 0; i < questions.size(); i++) {
+            List<ValidationError> errors = questions.get(i).validateAnswers(answers.get(i));
+            if (!errors.isEmpty()) {
+                return "Question " + (i + 1) + ": " + errors.get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Splits a CSV line into fields, honouring double quoted fields and
+     * doubled quotes inside them, then splits each field on '|'.
+     */
+    static List<List<String>> parseCsvLine(String line) {
+        List<List<String>> answers = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                answers.add(splitAnswers(field.toString()));
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field.");
+        }
+        answers.add(splitAnswers(field.toString()));
+        return answers;
+    }
+
+    private static List<String> splitAnswers(String field) {
+        List<String> list = new ArrayList<>();
+        int from = 0;
+        int bar;
+        while ((bar = field.indexOf('|', from)) >= 0) {
+            list.add(field.substring(from, bar));
+            from = bar + 1;
+        }
+        list.add(field.substring(from));
+        return list;
+    }
+
+    /**
+     * Parses a JSON array whose elements are strings or arrays of
+     * strings.  Only the subset of JSON needed for answer sheets is
+     * accepted.
+     */
+    static List<List<String>> parseJsonLine(String line) {
+        int[] pos = {skipSpace(line, 0)};
+        expect(line, pos, '[');
+        List<List<String>> answers = new ArrayList<>();
+        if (peek(line, pos) == ']') {
+            pos[0]++;
+        } else {
+            while (true) {
+                if (peek(line, pos) == '[') {
+                    pos[0]++;
+                    List<String> list = new ArrayList<>();
+                    if (peek(line, pos) == ']') {
+                        pos[0]++;
+                    } else {
+                        while (true) {
+                            list.add(parseJsonString(line, pos));
+                            if (peek(line, pos) == ',') {
+                                pos[0]++;
+                                continue;
+                            }
+                            expect(line, pos, ']');
+                            break;
+                        }
+                    }
+                    answers.add(list);
+                } else {
+                    List<String> single = new ArrayList<>();
+                    single.add(parseJsonString(line, pos));
+                    answers.add(single);
+                }
+                if (peek(line, pos) == ',') {
+                    pos[0]++;
+                    continue;
+                }
+                expect(line, pos, ']');
+                break;
+            }
+        }
+        if (skipSpace(line, pos[0]) != line.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON array.");
+        }
+        return answers;
+    }
+
+    private static String parseJsonString(String s, int[] pos) {
+        expect(s, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = pos[0];
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i >= s.length()) {
+                break;
+            }
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > s.length()) {
+                        throw new IllegalArgumentException("Truncated unicode escape.");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid unicode escape.");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    sb.append(e);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string.");
+    }
+
+    private static char peek(String s, int[] pos) {
+        pos[0] = skipSpace(s, pos[0]);
+        if (pos[0] >= s.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON line.");
+        }
+        return s.charAt(pos[0]);
+    }
+
+    private static void expect(String s, int[] pos, char c) {
+        if (peek(s, pos) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at column " + (pos[0] + 1) + ".");
+        }
+        pos[0]++;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Usage: {@code java BulkIngest survey|test <name> <answer file>}.
+     * Uses the same data directories as the interactive application.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("survey") || args[0].equals("test"))) {
+            System.out.println("Usage: java BulkIngest survey|test <name> <answer file>");
+            return;
+        }
+        File answerFile = new File(args[2]);
+        Report report;
+        if (args[0].equals("survey")) {
+            Survey survey = Survey.findByName("../surveys", args[1]);
+            if (survey == null) {
+                System.out.println("Survey '" + args[1] + "' not found.");
+                return;
+            }
+            report = ingest(survey, answerFile, "../responses");
+        } else {
+            Test test = Test.findByName("../tests", args[1]);
+            if (test == null) {
+                System.out.println("Test '" + args[1] + "' not found.");
+                return;
+            }
+            report = ingest(test, answerFile, "../test_responses");
+        }
+        System.out.println(report);
+    }
+}
\ No newline at end of file
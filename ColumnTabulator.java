@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Summarizes one question of a survey or test from its column in a
+ * {@link ColumnarResponseStore}, in the format of the tabulation of
+ * loaded response sets.  Only the question's own column files are read.
+ * Text answers are dictionary encoded by the store, so each distinct
+ * answer is decoded once and counted with the number of respondents who
+ * gave it.
+ */
+public final class ColumnTabulator {
+
+    private ColumnTabulator() {
+    }
+
+    /**
+     * Writes the answer time summary and the answer counts of one
+     * question.
+     *
+     * @param q the question
+     * @param store the stored responses
+     * @param question zero based question index
+     * @param out destination for the summary
+     * @throws IOException if the column cannot be read
+     */
+    public static void summarize(Question q, ColumnarResponseStore store, int question, PrintWriter out)
+            throws IOException {
+        AnswerTimes.printSummary(store.sortedAnswerMillis(question), out);
+        if (q instanceof TrueFalse) {
+            int[] counts = store.countChoices(question, 2);
+            out.println("True: " + counts[0]);
+            out.println("False: " + counts[1]);
+        } else if (q instanceof MultipleChoice) {
+            int n = ((MultipleChoice) q).getChoices().size();
+            int[] counts = store.countChoices(question, n);
+            for (int j = 0; j < n; j++) {
+                out.println((char) ('A' + j) + ": " + counts[j]);
+            }
+        } else if (q instanceof ShortAnswer || q instanceof DateQuestion) {
+            List<List<String>> distinct = new ArrayList<>();
+            int[] weights = weights(store, question, distinct);
+            // Counts spill to disk if the distinct answers exceed the budget
+            try (FrequencyTable counts = new FrequencyTable()) {
+                for (int d = 0; d < weights.length; d++) {
+                    for (String ans : distinct.get(d)) {
+                        counts.add(ans.trim(), weights[d]);
+                    }
+                }
+                counts.forEach((key, count) -> out.println(key + " " + count));
+            }
+        } else if (q instanceof Essay) {
+            for (String ans : store.readAllText(question)) {
+                out.println(ans);
+            }
+        } else if (q instanceof Matching) {
+            List<List<String>> distinct = new ArrayList<>();
+            int[] weights = weights(store, question, distinct);
+            Map<String, Integer> comboCounts = new HashMap<>();
+            for (int d = 0; d < weights.length; d++) {
+                List<String> pairs = new ArrayList<>();
+                for (String ans : distinct.get(d)) {
+                    pairs.add(ans.trim().toUpperCase(Locale.ROOT));
+                }
+                pairs.sort((a, b) -> a.split("-")[0].compareTo(b.split("-")[0]));
+                comboCounts.merge(String.join("|", pairs), weights[d], Integer::sum);
+            }
+            Matching m = (Matching) q;
+            List<String> left = m.getLeftItems();
+            List<String> right = m.getRightItems();
+            out.println();
+            for (int j = 0; j < left.size(); j++) {
+                out.printf("%c) %s %d) %s%n", (char) ('A' + j), left.get(j), j + 1, right.get(j));
+            }
+            for (Map.Entry<String, Integer> entry : comboCounts.entrySet()) {
+                out.println(entry.getValue());
+                for (String p : entry.getKey().split("\\|")) {
+                    String[] parts = p.split("-");
+                    if (parts.length == 2) {
+                        out.println(parts[0] + " " + parts[1]);
+                    } else {
+                        out.println(p);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Dictionary encodes a text column and returns how many respondents
+     * gave each distinct answer list.
+     */
+    private static int[] weights(ColumnarResponseStore store, int question, List<List<String>> distinct)
+            throws IOException {
+        int[] ids = store.encodeTextColumn(question, distinct);
+        int[] weights = new int[distinct.size()];
+        for (int id : ids) {
+            weights[id]++;
+        }
+        return weights;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,702 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Column oriented on-disk copy of the response sets collected for one
+ * survey or test.  Each question index gets its own column so that
+ * tabulating a single question only reads the pages belonging to that
+ * question.  Columns are read through memory mapped files, which lets
+ * the operating system share the page cache across runs.
+ * <p>
+ * Choice columns (true/false and multiple choice) are stored in
+ * {@code q<index>.col} as one int per respondent.  Each int is a bit
+ * mask of the selected options: bit 0 is "A" (or "True"), bit 1 is "B"
+ * (or "False") and so on up to "Z".  Answers are parsed as
+ * {@link TestQuestion#isCorrect} parses them, and {@link #INVALID_BIT}
+ * marks a row that held anything else, or more than one answer to a
+ * true/false question.  All other question types are stored as text
+ * columns made of two files: {@code q<index>.off} holds one long offset
+ * per respondent plus a trailing end offset, and {@code q<index>.dat}
+ * holds each respondent's answers as an int count followed by
+ * length-prefixed UTF-8 strings.  {@code q<index>.ms} holds one int per
+ * respondent with the milliseconds spent on the question, or -1.
+ * <p>
+ * A single mapping cannot exceed 2 GB, so files are mapped in windows of
+ * at most {@link #WINDOW} bytes and positions are kept as longs.
+ */
+public class ColumnarResponseStore {
+    private static final String META_FILE = "columns.meta";
+    private static final int META_MAGIC = 0x53524331; // "SRC1"
+    private static final String ROWS_FILE = "rows.names";
+    /** Largest number of bytes of a column file mapped at once. */
+    static final int WINDOW = 1 << 26;
+    /** Mask bit of a row with an answer that is not a valid option. */
+    static final int INVALID_BIT = 31;
+    /**
+     * Answer {@link #choiceAnswers} gives for {@link #INVALID_BIT}.  It
+     * is a Unicode noncharacter, so it equals no entered answer or key
+     * and a row holding it is never graded correct.
+     */
+    static final String UNPARSEABLE = "\uFFFF";
+    static final byte KIND_CHOICE = 1;
+    static final byte KIND_TEXT = 2;
+
+    private final File directory;
+    private final int rowCount;
+    private final byte[] kinds;
+
+    private ColumnarResponseStore(File directory, int rowCount, byte[] kinds) {
+        this.directory = directory;
+        this.rowCount = rowCount;
+        this.kinds = kinds;
+    }
+
+    /**
+     * Writes the given response sets to a columnar store in the specified
+     * directory, replacing any columns already there.  The question list
+     * determines how each column is encoded.
+     *
+     * @param questions questions of the survey or test, in order
+     * @param responseSets the response sets to convert
+     * @param directory target directory (created if necessary)
+     * @return the opened store
+     * @throws IOException if an I/O error occurs
+     */
+    public static ColumnarResponseStore write(List<Question> questions, List<ResponseSet> responseSets,
+                                              File directory) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        byte[] kinds = new byte[questions.size()];
+        for (int i = 0; i < questions.size(); i++) {
+            Question q = questions.get(i);
+            kinds[i] = (q instanceof TrueFalse || q instanceof MultipleChoice) ? KIND_CHOICE : KIND_TEXT;
+            if (kinds[i] == KIND_CHOICE) {
+                writeChoiceColumn(q, i, responseSets, directory, -1);
+            } else {
+                writeTextColumn(i, responseSets, directory, -1);
+            }
+            writeTimesColumn(i, responseSets, directory, -1);
+        }
+        writeMeta(directory, responseSets.size(), kinds);
+        return new ColumnarResponseStore(directory, responseSets.size(), kinds);
+    }
+
+    /**
+     * Adds response sets as rows after the existing ones.  Only the ends
+     * of the column files are written, so the cost depends on the number
+     * of new rows rather than on the size of the store.
+     *
+     * @param questions questions of the survey or test, in order
+     * @param responseSets the response sets to add
+     * @return the store including the new rows
+     * @throws IOException if an I/O error occurs
+     */
+    public ColumnarResponseStore append(List<Question> questions, List<ResponseSet> responseSets)
+            throws IOException {
+        if (questions.size() != kinds.length) {
+            throw new IllegalArgumentException("Expected " + kinds.length + " questions but got "
+                    + questions.size());
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == KIND_CHOICE) {
+                writeChoiceColumn(questions.get(i), i, responseSets, directory, rowCount);
+            } else {
+                writeTextColumn(i, responseSets, directory, rowCount);
+            }
+            writeTimesColumn(i, responseSets, directory, rowCount);
+        }
+        int rows = rowCount + responseSets.size();
+        writeMeta(directory, rows, kinds);
+        return new ColumnarResponseStore(directory, rows, kinds);
+    }
+
+    private static void writeMeta(File directory, int rows, byte[] kinds) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(new File(directory, META_FILE))))) {
+            out.writeInt(META_MAGIC);
+            out.writeInt(rows);
+            out.writeInt(kinds.length);
+            out.write(kinds);
+        }
+    }
+
+    /**
+     * Opens an existing columnar store.  Only the small metadata file is
+     * read; column files are mapped lazily when a question is accessed.
+     *
+     * @param directory directory previously written by {@link #write}
+     * @return the opened store
+     * @throws IOException if the metadata is missing or invalid
+     */
+    public static ColumnarResponseStore open(File directory) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(new File(directory, META_FILE)))) {
+            if (in.readInt() != META_MAGIC) {
+                throw new IOException("Directory does not contain a columnar response store.");
+            }
+            int rows = in.readInt();
+            byte[] kinds = new byte[in.readInt()];
+            in.readFully(kinds);
+            return new ColumnarResponseStore(directory, rows, kinds);
+        }
+    }
+
+    /**
+     * Brings the store kept for a survey or test in the
+     * {@code <name>.columns} directory next to its response files up to
+     * date and returns it.  Response files saved since the last call are
+     * loaded and appended in the order they were saved, so repeated
+     * tabulations only parse the new files.  The store is rewritten from
+     * every response file when one it holds has been removed or the
+     * question types have changed.  Files that cannot be loaded are
+     * skipped, as {@link Main#loadResponseSets} does.
+     *
+     * @param questions questions of the survey or test, in order
+     * @param responseDir the responses directory
+     * @param name name of the survey or test
+     * @return the up to date store
+     * @throws IOException if the store cannot be read or written
+     */
+    public static ColumnarResponseStore sync(List<Question> questions, File responseDir, String name)
+            throws IOException {
+        File dir = new File(responseDir, name.replaceAll("[^a-zA-Z0-9_-]", "_") + ".columns");
+        String[] names = GradeMatrix.responseFileNames(responseDir, name);
+        String layout = layoutOf(questions);
+        List<String> stored = readRowNames(dir, layout);
+        ColumnarResponseStore store = null;
+        if (stored != null && new File(dir, META_FILE).isFile()) {
+            store = open(dir);
+            if (store.getRowCount() != stored.size()
+                    || !new HashSet<>(Arrays.asList(names)).containsAll(stored)) {
+                store = null;
+            }
+        }
+        if (store == null) {
+            stored = new ArrayList<>();
+        }
+        Set<String> known = new HashSet<>(stored);
+        List<String> added = new ArrayList<>();
+        for (String n : names) {
+            if (!known.contains(n)) {
+                added.add(n);
+            }
+        }
+        List<ResponseSet> sets = new ArrayList<>();
+        for (String n : GradeMatrix.sortBySaveOrder(responseDir, added.toArray(new String[0]))) {
+            try {
+                sets.add(ResponseSet.loadFromFile(new File(responseDir, n).getPath()));
+                stored.add(n);
+            } catch (IOException | ClassNotFoundException e) {
+                Metrics.PARSE_FAILURES.increment();
+            }
+        }
+        if (store != null && sets.isEmpty()) {
+            return store;
+        }
+        store = store == null ? write(questions, sets, dir) : store.append(questions, sets);
+        writeRowNames(dir, layout, stored);
+        return store;
+    }
+
+    /**
+     * Returns the question types in order.  A store written for other
+     * types cannot be appended to, since the same mask or text means
+     * something else.
+     */
+    private static String layoutOf(List<Question> questions) {
+        StringBuilder sb = new StringBuilder();
+        for (Question q : questions) {
+            sb.append(q.getClass().getSimpleName()).append(',');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the response file of each row, or null if there is no
+     * list or it was written for a different layout.
+     */
+    private static List<String> readRowNames(File dir, String layout) throws IOException {
+        File file = new File(dir, ROWS_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (!in.readUTF().equals(layout)) {
+                return null;
+            }
+            int n = in.readInt();
+            List<String> names = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                names.add(in.readUTF());
+            }
+            return names;
+        }
+    }
+
+    private static void writeRowNames(File dir, String layout, List<String> names) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(new File(dir, ROWS_FILE))))) {
+            out.writeUTF(layout);
+            out.writeInt(names.size());
+            for (String n : names) {
+                out.writeUTF(n);
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return kinds.length;
+    }
+
+    public boolean isChoiceColumn(int question) {
+        return kinds[question] == KIND_CHOICE;
+    }
+
+    /**
+     * Counts how many respondents selected each option of a choice
+     * column.  Index 0 of the result corresponds to "A" (or "True").
+     *
+     * @param question zero based question index
+     * @param optionCount number of options the question offers
+     * @return per option selection counts
+     * @throws IOException if the column cannot be mapped
+     */
+    public int[] countChoices(int question, int optionCount) throws IOException {
+        if (!isChoiceColumn(question)) {
+            throw new IllegalArgumentException("Question " + (question + 1) + " is not a choice column");
+        }
+        int[] counts = new int[optionCount];
+        try (MappedWindow col = new MappedWindow(columnFile(question, ".col"))) {
+            for (int from = 0; from < rowCount; from += WINDOW / 4) {
+                int n = Math.min(rowCount - from, WINDOW / 4);
+                IntBuffer masks = col.slice(from * 4L, n * 4).asIntBuffer();
+                for (int r = 0; r < n; r++) {
+                    int mask = masks.get(r);
+                    while (mask != 0) {
+                        int bit = Integer.numberOfTrailingZeros(mask);
+                        if (bit < optionCount && bit != INVALID_BIT) {
+                            counts[bit]++;
+                        }
+                        mask &= mask - 1;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the answers of a single respondent to a text column.
+     *
+     * @param question zero based question index
+     * @param row respondent index
+     * @return the respondent's answers in submission order
+     * @throws IOException if the column cannot be mapped
+     */
+    public List<String> readText(int question, int row) throws IOException {
+        if (isChoiceColumn(question)) {
+            throw new IllegalArgumentException("Question " + (question + 1) + " is not a text column");
+        }
+        try (MappedWindow offsets = new MappedWindow(columnFile(question, ".off"));
+             MappedWindow data = new MappedWindow(columnFile(question, ".dat"))) {
+            return decodeRow(row(offsets, data, row), 0);
+        }
+    }
+
+    /**
+     * Returns every answer stored in a text column, flattened in
+     * respondent order.  Only the column's own files are touched.
+     *
+     * @param question zero based question index
+     * @return all answers to the question
+     * @throws IOException if the column cannot be mapped
+     */
+    public List<String> readAllText(int question) throws IOException {
+        if (isChoiceColumn(question)) {
+            throw new IllegalArgumentException("Question " + (question + 1) + " is not a text column");
+        }
+        List<String> all = new ArrayList<>();
+        try (MappedWindow offsets = new MappedWindow(columnFile(question, ".off"));
+             MappedWindow data = new MappedWindow(columnFile(question, ".dat"))) {
+            for (int r = 0; r < rowCount; r++) {
+                all.addAll(decodeRow(row(offsets, data, r), 0));
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Returns the option bit mask of every respondent to a choice column,
+     * in respondent order.
+     *
+     * @param question zero based question index
+     * @return one mask per respondent
+     * @throws IOException if the column cannot be mapped
+     */
+    public int[] readChoiceMasks(int question) throws IOException {
+        return readChoiceMasks(question, 0, rowCount);
+    }
+
+    /**
+     * Returns the option bit masks of the rows {@code from} (inclusive) to
+     * {@code to} (exclusive) of a choice column.
+     */
+    public int[] readChoiceMasks(int question, int from, int to) throws IOException {
+        if (!isChoiceColumn(question)) {
+            throw new IllegalArgumentException("Question " + (question + 1) + " is not a choice column");
+        }
+        int[] masks = new int[to - from];
+        try (MappedWindow col = new MappedWindow(columnFile(question, ".col"))) {
+            col.readInts(from * 4L, masks);
+        }
+        return masks;
+    }
+
+    /**
+     * Returns the recorded answer times of a question in ascending order,
+     * skipping respondents without one.  Stores written before times
+     * were kept have none.
+     *
+     * @param question zero based question index
+     * @return sorted answer times in milliseconds
+     * @throws IOException if the column cannot be mapped
+     */
+    public int[] sortedAnswerMillis(int question) throws IOException {
+        File file = columnFile(question, ".ms");
+        if (!file.isFile()) {
+            return new int[0];
+        }
+        int[] times = new int[rowCount];
+        try (MappedWindow col = new MappedWindow(file)) {
+            col.readInts(0, times);
+        }
+        int n = 0;
+        for (int t : times) {
+            if (t >= 0) {
+                times[n++] = t;
+            }
+        }
+        times = Arrays.copyOf(times, n);
+        Arrays.sort(times);
+        return times;
+    }
+
+    /**
+     * Dictionary encodes a text column: each distinct set of answers is
+     * decoded once and added to {@code distinct}, and the result gives
+     * every respondent's index into that list.  Rows are compared by
+     * their encoded bytes, so repeated answers cost no decoding.
+     *
+     * @param question zero based question index
+     * @param distinct receives the distinct answer lists
+     * @return per respondent index into {@code distinct}
+     * @throws IOException if the column cannot be mapped
+     */
+    public int[] encodeTextColumn(int question, List<List<String>> distinct) throws IOException {
+        return encodeTextColumn(question, 0, rowCount, distinct);
+    }
+
+    /**
+     * Dictionary encodes the rows {@code from} (inclusive) to {@code to}
+     * (exclusive) of a text column.  Element i of the result belongs to
+     * row {@code from + i}.
+     *
+     * @see #encodeTextColumn(int, List)
+     */
+    public int[] encodeTextColumn(int question, int from, int to, List<List<String>> distinct)
+            throws IOException {
+        if (isChoiceColumn(question)) {
+            throw new IllegalArgumentException("Question " + (question + 1) + " is not a text column");
+        }
+        // ByteBuffer equality and hash codes compare the remaining bytes
+        Map<ByteBuffer, Integer> ids = new HashMap<>();
+        int[] rows = new int[to - from];
+        try (MappedWindow offsets = new MappedWindow(columnFile(question, ".off"));
+             MappedWindow data = new MappedWindow(columnFile(question, ".dat"))) {
+            for (int r = from; r < to; r++) {
+                ByteBuffer row = row(offsets, data, r);
+                Integer id = ids.get(row);
+                if (id == null) {
+                    id = distinct.size();
+                    distinct.add(decodeRow(row, 0));
+                    ids.put(row, id);
+                }
+                rows[r - from] = id;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Turns a choice mask back into answers as they were entered: "True"
+     * or "False" for true/false questions and option letters otherwise.
+     * A row marked invalid also gets {@link #UNPARSEABLE}, so grading
+     * the result agrees with grading the answers as entered.
+     *
+     * @param q the question the mask belongs to
+     * @param mask option bit mask
+     * @return the selected options
+     */
+    public static List<String> choiceAnswers(Question q, int mask) {
+        List<String> answers = new ArrayList<>(Integer.bitCount(mask));
+        while (mask != 0) {
+            int bit = Integer.numberOfTrailingZeros(mask);
+            if (bit == INVALID_BIT) {
+                answers.add(UNPARSEABLE);
+            } else if (q instanceof TrueFalse) {
+                answers.add(bit == 0 ? "True" : "False");
+            } else {
+                answers.add(String.valueOf((char) ('A' + bit)));
+            }
+            mask &= mask - 1;
+        }
+        return answers;
+    }
+
+    private static List<String> decodeRow(ByteBuffer data, int pos) {
+        int count = data.getInt(pos);
+        pos += 4;
+        List<String> answers = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int len = data.getInt(pos);
+            pos += 4;
+            answers.add(decodeString(data, pos, len));
+            pos += len;
+        }
+        return answers;
+    }
+
+    private static String decodeString(ByteBuffer data, int pos, int len) {
+        byte[] bytes = new byte[len];
+        data.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the encoded answers of one row of a text column, between
+     * its offset and the next.
+     */
+    private static ByteBuffer row(MappedWindow offsets, MappedWindow data, int row) throws IOException {
+        long start = offsets.getLong(row * 8L);
+        long end = offsets.getLong(row * 8L + 8);
+        return data.slice(start, Math.toIntExact(end - start));
+    }
+
+    private File columnFile(int question, String suffix) {
+        return new File(directory, "q" + question + suffix);
+    }
+
+    /**
+     * Read-only view of a column file that maps at most {@link #WINDOW}
+     * bytes at a time.  Each access moves the window to start at the
+     * requested position when it is not already covered, so a forward
+     * scan maps every page once.
+     */
+    private static final class MappedWindow implements Closeable {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long base;
+
+        MappedWindow(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            size = channel.size();
+        }
+
+        /** Returns the {@code len} bytes at {@code pos} as a new buffer. */
+        ByteBuffer slice(long pos, int len) throws IOException {
+            cover(pos, len);
+            return buffer.slice((int) (pos - base), len);
+        }
+
+        int getInt(long pos) throws IOException {
+            cover(pos, 4);
+            return buffer.getInt((int) (pos - base));
+        }
+
+        long getLong(long pos) throws IOException {
+            cover(pos, 8);
+            return buffer.getLong((int) (pos - base));
+        }
+
+        /** Fills {@code dst} with the ints starting at {@code pos}. */
+        void readInts(long pos, int[] dst) throws IOException {
+            for (int done = 0; done < dst.length; ) {
+                int n = Math.min(dst.length - done, WINDOW / 4);
+                slice(pos + done * 4L, n * 4).asIntBuffer().get(dst, done, n);
+                done += n;
+            }
+        }
+
+        private void cover(long pos, int len) throws IOException {
+            if (buffer != null && pos >= base && pos + len <= base + buffer.capacity()) {
+                return;
+            }
+            if (pos < 0 || pos + len > size) {
+                throw new IOException("Column file is truncated");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(size - pos, Math.max(WINDOW, len)));
+            base = pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Mappings stay valid after the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a choice column, or appends to it after row {@code appendAt}
+     * when that is not negative.
+     */
+    private static void writeChoiceColumn(Question q, int index, List<ResponseSet> responseSets,
+                                          File directory, int appendAt) throws IOException {
+        File file = new File(directory, "q" + index + ".col");
+        if (appendAt >= 0) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                // Drop anything left behind by an append that did not finish
+                ch.truncate(appendAt * 4L);
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, appendAt >= 0)))) {
+            for (ResponseSet rs : responseSets) {
+                int count = rs.answerCount(index);
+                // A true/false question takes exactly one answer
+                int mask = q instanceof TrueFalse && count > 1 ? 1 << INVALID_BIT : 0;
+                for (int k = 0; k < count; k++) {
+                    mask |= 1 << choiceBit(q, rs.answer(index, k));
+                }
+                out.writeInt(mask);
+            }
+        }
+    }
+
+    /**
+     * Returns the mask bit of one answer, accepting what
+     * {@link TestQuestion#isCorrect} accepts: "t", "true", "f" or "false"
+     * for true/false questions and a single letter otherwise, ignoring
+     * case and surrounding whitespace.
+     */
+    private static int choiceBit(Question q, String ans) {
+        if (q instanceof TrueFalse) {
+            String lower = ans.trim().toLowerCase(Locale.ROOT);
+            if (lower.equals("t") || lower.equals("true")) {
+                return 0;
+            } else if (lower.equals("f") || lower.equals("false")) {
+                return 1;
+            }
+            return INVALID_BIT;
+        }
+        String upper = ans.trim().toUpperCase(Locale.ROOT);
+        if (upper.length() != 1 || upper.charAt(0) < 'A' || upper.charAt(0) > 'Z') {
+            return INVALID_BIT;
+        }
+        return upper.charAt(0) - 'A';
+    }
+
+    /**
+     * Writes the answer times of a question, or appends them after row
+     * {@code appendAt} when that is not negative.  A store written before
+     * times were kept gets -1 for its earlier rows.
+     */
+    private static void writeTimesColumn(int index, List<ResponseSet> responseSets,
+                                         File directory, int appendAt) throws IOException {
+        File file = new File(directory, "q" + index + ".ms");
+        int pad = 0;
+        if (appendAt >= 0) {
+            if (file.isFile()) {
+                try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    // Drop anything left behind by an append that did not finish
+                    ch.truncate(appendAt * 4L);
+                }
+            } else {
+                pad = appendAt;
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file, appendAt >= 0)))) {
+            for (int r = 0; r < pad; r++) {
+                out.writeInt(-1);
+            }
+            for (ResponseSet rs : responseSets) {
+                out.writeInt(rs.answerMillis(index));
+            }
+        }
+    }
+
+    /**
+     * Writes a text column, or appends to it after row {@code appendAt}
+     * when that is not negative.  The end offset of that row is dropped
+     * and the new rows continue from it.
+     */
+    private static void writeTextColumn(int index, List<ResponseSet> responseSets,
+                                        File directory, int appendAt) throws IOException {
+        File offFile = new File(directory, "q" + index + ".off");
+        File datFile = new File(directory, "q" + index + ".dat");
+        long pos = 0;
+        if (appendAt >= 0) {
+            long at = appendAt * 8L;
+            try (FileChannel ch = FileChannel.open(offFile.toPath(), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                ByteBuffer end = ByteBuffer.allocate(8);
+                while (end.hasRemaining()) {
+                    if (ch.read(end, at + end.position()) < 0) {
+                        throw new IOException("Column file is truncated: " + offFile);
+                    }
+                }
+                pos = end.getLong(0);
+                ch.truncate(at);
+            }
+            try (FileChannel ch = FileChannel.open(datFile.toPath(), StandardOpenOption.WRITE)) {
+                // Drop anything left behind by an append that did not finish
+                ch.truncate(pos);
+            }
+        }
+        boolean append = appendAt >= 0;
+        try (DataOutputStream off = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(offFile, append)));
+             DataOutputStream dat = new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(datFile, append)))) {
+            for (ResponseSet rs : responseSets) {
+                off.writeLong(pos);
+                int count = rs.answerCount(index);
+                dat.writeInt(count);
+                pos += 4;
+                for (int k = 0; k < count; k++) {
+                    byte[] bytes = rs.answer(index, k).getBytes(StandardCharsets.UTF_8);
+                    dat.writeInt(bytes.length);
+                    dat.write(bytes);
+                    pos += 4 + bytes.length;
+                }
+            }
+            off.writeLong(pos);
+        }
+    }
+}
\ No newline at end of file
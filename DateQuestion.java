@@ -26,9 +26,9 @@ public class DateQuestion extends Question {
     }
 
     @Override
-    public void display() {
-        System.out.println(getPrompt());
-        System.out.println("(Please enter a date in YYYY-MM-DD format)");
+    protected void render(StringBuilder sb) {
+        sb.append(getPrompt()).append(NEWLINE);
+        sb.append("(Please enter a date in YYYY-MM-DD format)").append(NEWLINE);
     }
 
     @Override
@@ -37,19 +37,49 @@ public class DateQuestion extends Question {
         while (true) {
             System.out.print("Enter date (YYYY-MM-DD): ");
             String input = scanner.nextLine().trim();
-            try {
-                LocalDate.parse(input, getFormatter());
+            if (isValidDate(input)) {
                 answers.add(input);
                 break;
-            } catch (DateTimeParseException e) {
-                System.out.println("Invalid date format. Please try again.");
             }
+            System.out.println("Invalid date format. Please try again.");
         }
         return answers;
     }
 
+    private boolean isValidDate(String input) {
+        try {
+            LocalDate.parse(input, getFormatter());
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<ValidationError> validateAnswers(List<String> answers) {
+        List<ValidationError> errors = super.validateAnswers(answers);
+        if (answers != null) {
+            for (int k = 0; k < answers.size(); k++) {
+                if (answers.get(k) == null || !isValidDate(answers.get(k).trim())) {
+                    errors.add(new ValidationError(k, "Invalid date format. Please use YYYY-MM-DD."));
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public List<String> normalizeAnswers(List<String> answers) {
+        List<String> result = new ArrayList<>(answers.size());
+        for (String ans : answers) {
+            result.add(ans.trim());
+        }
+        return result;
+    }
+
     @Override
     public void modify(Scanner scanner) {
+        checkMutable();
         System.out.println("Current prompt: " + getPrompt());
         System.out.print("Do you wish to modify the prompt? (Y/N): ");
         String resp = scanner.nextLine().trim().toLowerCase();
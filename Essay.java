@@ -15,8 +15,8 @@ public class Essay extends Question {
     }
 
     @Override
-    public void display() {
-        System.out.println(getPrompt());
+    protected void render(StringBuilder sb) {
+        sb.append(getPrompt()).append(NEWLINE);
     }
 
     @Override
@@ -39,6 +39,7 @@ public class Essay extends Question {
 
     @Override
     public void modify(Scanner scanner) {
+        checkMutable();
         System.out.println("Current prompt: " + getPrompt());
         System.out.print("Do you wish to modify the prompt? (Y/N): ");
         String resp = scanner.nextLine().trim().toLowerCase();
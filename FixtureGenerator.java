@@ -0,0 +1,440 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds synthetic surveys, tests and response sets for scale testing.
+ * Questions are drawn from a weighted mix of the six question types and
+ * answers follow a configurable distribution:
+ * <ul>
+ *   <li>For tests, each answer is correct with probability
+ *       {@code correctRate}; otherwise a wrong answer is drawn.</li>
+ *   <li>Choices, short answers and dates are drawn from a Zipf
+ *       distribution with exponent {@code skew}, so a skew of 0 is
+ *       uniform and larger values concentrate answers on the first
+ *       options.</li>
+ * </ul>
+ * Everything is written through the normal persistence paths:
+ * {@link Survey#saveToFile}, {@link Test#saveToFile} and
+ * {@link ResponseSet#saveToUniqueFile}.  Response sets are generated and
+ * saved by several threads, each with its own seeded random source, so
+ * a run is repeatable for a given seed and thread count.
+ */
+public class FixtureGenerator {
+    /** Question type names accepted in a mix, in the order used by the weights. */
+    public static final List<String> QUESTION_TYPES = Collections.unmodifiableList(Arrays.asList(
+            "TrueFalse", "MultipleChoice", "ShortAnswer", "Essay", "DateQuestion", "Matching"));
+
+    private static final int CHOICES = 4;
+    private static final int MATCH_PAIRS = 4;
+    private static final int VOCABULARY = 200;
+    private static final int ESSAY_WORDS = 40;
+    private static final int DATE_RANGE_DAYS = 365;
+
+    private final long seed;
+    private int[] mix = {1, 1, 1, 1, 1, 1};
+    private double correctRate = 0.6;
+    private double skew = 1.0;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /** Cumulative Zipf weights by range size, rebuilt when the skew changes. */
+    private final Map<Integer, double[]> zipfTables = new ConcurrentHashMap<>();
+
+    public FixtureGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the relative weight of each question type, indexed like
+     * {@link #QUESTION_TYPES}.
+     */
+    public void setMix(int[] weights) {
+        if (weights.length != QUESTION_TYPES.size()) {
+            throw new IllegalArgumentException("Expected " + QUESTION_TYPES.size() + " weights");
+        }
+        int total = 0;
+        for (int w : weights) {
+            if (w < 0) {
+                throw new IllegalArgumentException("Weights must not be negative");
+            }
+            total += w;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        this.mix = weights.clone();
+    }
+
+    /**
+     * Parses a mix such as {@code TrueFalse=3,Essay=1}.  Types not named
+     * get weight 0.
+     */
+    public static int[] parseMix(String spec) {
+        int[] weights = new int[QUESTION_TYPES.size()];
+        for (String part : spec.split(",")) {
+            int eq = part.indexOf('=');
+            String type = eq < 0 ? part.trim() : part.substring(0, eq).trim();
+            int index = QUESTION_TYPES.indexOf(type);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown question type: " + type);
+            }
+            weights[index] = eq < 0 ? 1 : Integer.parseInt(part.substring(eq + 1).trim());
+        }
+        return weights;
+    }
+
+    public void setCorrectRate(double correctRate) {
+        if (correctRate < 0 || correctRate > 1) {
+            throw new IllegalArgumentException("Correct rate must be between 0 and 1");
+        }
+        this.correctRate = correctRate;
+    }
+
+    public void setSkew(double skew) {
+        if (skew < 0) {
+            throw new IllegalArgumentException("Skew must not be negative");
+        }
+        this.skew = skew;
+        zipfTables.clear();
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Builds a survey with the given number of questions drawn from the
+     * configured mix.
+     */
+    public Survey generateSurvey(String name, int questionCount) {
+        Survey survey = new Survey(name);
+        Random random = new Random(seed);
+        for (int i = 0; i < questionCount; i++) {
+            survey.addQuestion(newQuestion(pickType(random), i).getQuestion());
+        }
+        return survey;
+    }
+
+    /**
+     * Builds a test with the given number of questions drawn from the
+     * configured mix.  Every question except essays has a correct answer.
+     */
+    public Test generateTest(String name, int questionCount) {
+        Test test = new Test(name);
+        Random random = new Random(seed);
+        for (int i = 0; i < questionCount; i++) {
+            test.addQuestion(newQuestion(pickType(random), i));
+        }
+        return test;
+    }
+
+    private String pickType(Random random) {
+        int total = 0;
+        for (int w : mix) {
+            total += w;
+        }
+        int r = random.nextInt(total);
+        for (int i = 0; i < mix.length; i++) {
+            r -= mix[i];
+            if (r < 0) {
+                return QUESTION_TYPES.get(i);
+            }
+        }
+        throw new AssertionError();
+    }
+
+    /**
+     * Creates a question of the named type together with its correct
+     * answers.  Wrong answers produced by {@link #answerSheet} never
+     * coincide with these.
+     */
+    public static TestQuestion newQuestion(String type, int index) {
+        String prompt = type + " question " + (index + 1);
+        switch (type) {
+            case "TrueFalse":
+                return new TestQuestion(new TrueFalse(prompt), Collections.singletonList("True"));
+            case "MultipleChoice": {
+                List<String> choices = new ArrayList<>();
+                for (int c = 0; c < CHOICES; c++) {
+                    choices.add("Option " + (c + 1));
+                }
+                return new TestQuestion(new MultipleChoice(prompt, choices), Collections.singletonList("A"));
+            }
+            case "ShortAnswer":
+                return new TestQuestion(new ShortAnswer(prompt), Collections.singletonList(word(0)));
+            case "Essay":
+                return new TestQuestion(new Essay(prompt), null);
+            case "DateQuestion":
+                return new TestQuestion(new DateQuestion(prompt), Collections.singletonList(date(0)));
+            case "Matching": {
+                List<String> left = new ArrayList<>();
+                List<String> right = new ArrayList<>();
+                List<String> correct = new ArrayList<>();
+                for (int p = 0; p < MATCH_PAIRS; p++) {
+                    left.add("Item " + (p + 1));
+                    right.add("Match " + (p + 1));
+                    correct.add((char) ('A' + p) + "-" + (p + 1));
+                }
+                return new TestQuestion(new Matching(prompt, left, right), correct);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown question type: " + type);
+        }
+    }
+
+    /**
+     * Returns one respondent's answers to the given questions.  Pass the
+     * test questions to honour the correct rate, or survey questions
+     * wrapped without answers for a plain answer distribution.
+     */
+    public List<List<String>> answerSheet(List<TestQuestion> questions, Random random) {
+        List<List<String>> answers = new ArrayList<>(questions.size());
+        for (TestQuestion tq : questions) {
+            answers.add(answer(tq, random));
+        }
+        return answers;
+    }
+
+    private List<String> answer(TestQuestion tq, Random random) {
+        if (tq.getCorrectAnswers() != null && random.nextDouble() < correctRate) {
+            return new ArrayList<>(tq.getCorrectAnswers());
+        }
+        boolean wrong = tq.getCorrectAnswers() != null;
+        Question q = tq.getQuestion();
+        List<String> ans = new ArrayList<>();
+        if (q instanceof TrueFalse) {
+            ans.add(wrong || zipf(2, random) == 1 ? "False" : "True");
+        } else if (q instanceof MultipleChoice) {
+            int size = ((MultipleChoice) q).getChoices().size();
+            int choice = wrong ? 1 + zipf(size - 1, random) : zipf(size, random);
+            ans.add(String.valueOf((char) ('A' + choice)));
+        } else if (q instanceof ShortAnswer) {
+            ans.add(word(wrong ? 1 + zipf(VOCABULARY - 1, random) : zipf(VOCABULARY, random)));
+        } else if (q instanceof Essay) {
+            StringBuilder sb = new StringBuilder();
+            for (int w = 0; w < ESSAY_WORDS; w++) {
+                if (w > 0) {
+                    sb.append(' ');
+                }
+                sb.append(word(zipf(VOCABULARY, random)));
+            }
+            ans.add(sb.toString());
+        } else if (q instanceof DateQuestion) {
+            ans.add(date(wrong ? 1 + zipf(DATE_RANGE_DAYS - 1, random) : zipf(DATE_RANGE_DAYS, random)));
+        } else if (q instanceof Matching) {
+            int pairs = ((Matching) q).getLeftItems().size();
+            List<Integer> perm = new ArrayList<>();
+            for (int p = 1; p <= pairs; p++) {
+                perm.add(p);
+            }
+            do {
+                Collections.shuffle(perm, random);
+            } while (wrong && isIdentity(perm));
+            for (int p = 0; p < pairs; p++) {
+                ans.add((char) ('A' + p) + "-" + perm.get(p));
+            }
+        }
+        return ans;
+    }
+
+    private static boolean isIdentity(List<Integer> perm) {
+        for (int i = 0; i < perm.size(); i++) {
+            if (perm.get(i) != i + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Draws a value in [0, n) with probability proportional to
+     * 1 / (k + 1)^skew, by binary search over the cumulative weights.
+     */
+    private int zipf(int n, Random random) {
+        if (skew == 0 || n == 1) {
+            return random.nextInt(n);
+        }
+        double[] cumulative = zipfTables.computeIfAbsent(n, size -> {
+            double[] table = new double[size];
+            double total = 0;
+            for (int k = 0; k < size; k++) {
+                total += Math.pow(k + 1, -skew);
+                table[k] = total;
+            }
+            return table;
+        });
+        double r = random.nextDouble() * cumulative[n - 1];
+        int index = Arrays.binarySearch(cumulative, r);
+        return Math.min(n - 1, index >= 0 ? index + 1 : -index - 1);
+    }
+
+    private static String word(int index) {
+        return "word" + index;
+    }
+
+    private static String date(int dayOffset) {
+        return LocalDate.of(2020, 1, 1).plusDays(dayOffset).toString();
+    }
+
+    /**
+     * Generates response sets for a test and saves each one to its own
+     * file in the response directory.
+     *
+     * @param test the test being answered
+     * @param respondents number of response sets to write
+     * @param responseDir directory to save to
+     * @return number of response sets written
+     * @throws IOException if a response set cannot be saved
+     */
+    public long writeResponses(Test test, long respondents, String responseDir) throws IOException {
+        return writeResponses(test.getName(), test.getVersion(), test.getQuestions(), test, respondents,
+                responseDir);
+    }
+
+    /**
+     * Generates response sets for a survey.
+     *
+     * @see #writeResponses(Test, long, String)
+     */
+    public long writeResponses(Survey survey, long respondents, String responseDir) throws IOException {
+        List<TestQuestion> questions = new ArrayList<>();
+        for (Question q : survey.getQuestions()) {
+            questions.add(new TestQuestion(q, null));
+        }
+        return writeResponses(survey.getName(), survey.getVersion(), questions, null, respondents, responseDir);
+    }
+
+    /**
+     * @param test the test answered, whose {@link Leaderboard} is kept up
+     *             to date, or null for a survey
+     */
+    private long writeResponses(String name, int version, List<TestQuestion> questions, Test test,
+                                long respondents, String responseDir) throws IOException {
+        new File(responseDir).mkdirs();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            long perThread = (respondents + threads - 1) / threads;
+            for (int t = 0; t < threads; t++) {
+                long from = t * perThread;
+                long to = Math.min(respondents, from + perThread);
+                if (from >= to) {
+                    break;
+                }
+                Random random = new Random(seed * 31 + t);
+                parts.add(pool.submit(() -> {
+                    for (long i = from; i < to; i++) {
+                        ResponseSet rs = new ResponseSet(name, answerSheet(questions, random), version);
+                        File file = rs.saveToUniqueFile(responseDir);
+                        if (test != null) {
+                            Leaderboard.record(new File(responseDir), test, rs, file.getName());
+                        }
+                    }
+                    return to - from;
+                }));
+            }
+            long written = 0;
+            for (Future<Long> part : parts) {
+                written += part.get();
+            }
+            return written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing responses", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Usage: {@code java FixtureGenerator survey|test <name> <questions> <respondents>
+     * [--mix TYPE=W,...] [--correct RATE] [--skew S] [--threads N] [--seed N]}.
+     * Writes to the same data directories as the interactive application.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4 || args.length % 2 != 0
+                || !(args[0].equals("survey") || args[0].equals("test"))) {
+            System.out.println("Usage: java FixtureGenerator survey|test <name> <questions> <respondents>"
+                    + " [--mix TYPE=W,...] [--correct RATE] [--skew S] [--threads N] [--seed N]");
+            return;
+        }
+        long seed = 1;
+        int[] mix = null;
+        Double correct = null;
+        Double skew = null;
+        Integer threads = null;
+        for (int i = 4; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--mix":
+                    mix = parseMix(args[i + 1]);
+                    break;
+                case "--correct":
+                    correct = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--skew":
+                    skew = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        FixtureGenerator generator = new FixtureGenerator(seed);
+        if (mix != null) {
+            generator.setMix(mix);
+        }
+        if (correct != null) {
+            generator.setCorrectRate(correct);
+        }
+        if (skew != null) {
+            generator.setSkew(skew);
+        }
+        if (threads != null) {
+            generator.setThreads(threads);
+        }
+        String name = args[1];
+        int questions = Integer.parseInt(args[2]);
+        long respondents = Long.parseLong(args[3]);
+        String baseName = name.replaceAll("[^a-zA-Z0-9_-]", "_");
+        long start = System.nanoTime();
+        long written;
+        if (args[0].equals("survey")) {
+            Survey survey = generator.generateSurvey(name, questions);
+            new File("../surveys").mkdirs();
+            survey.saveToFile(new File("../surveys", baseName + ".ser").getPath());
+            written = generator.writeResponses(survey, respondents, "../responses");
+        } else {
+            Test test = generator.generateTest(name, questions);
+            new File("../tests").mkdirs();
+            test.saveToFile(new File("../tests", baseName + ".tst").getPath());
+            written = generator.writeResponses(test, respondents, "../test_responses");
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Wrote %s '%s' with %d questions and %d response sets in %.2f s (%.0f sets/s).%n",
+                args[0], name, questions, written, seconds, written / seconds);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,251 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts distinct answers exactly while keeping heap use bounded.  Counts
+ * are accumulated in memory until the number of distinct keys reaches the
+ * configured budget; the table is then spilled to hash-partitioned files
+ * and cleared.  When the results are read, each partition is merged on
+ * its own, so only one partition's distinct keys are in memory at a time.
+ * A partition with more distinct keys than the budget is split again
+ * into sub-partitions with a differently seeded hash, recursively, so
+ * heap use stays bounded however many distinct keys there are.
+ * <p>
+ * The default budget can be set with the system property
+ * {@code survey.tabulate.maxDistinct}.
+ */
+public class FrequencyTable implements AutoCloseable {
+    public static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("survey.tabulate.maxDistinct", 500_000);
+    private static final int PARTITIONS = 64;
+    /**
+     * Deepest split of a partition.  Keys that still do not fit are
+     * merged in memory; 64^4 partitions exceed any realistic key count.
+     */
+    private static final int MAX_SPLIT_LEVEL = 4;
+
+    /**
+     * Receives each distinct key together with its total count.
+     */
+    public interface EntryConsumer {
+        void accept(String key, int count) throws IOException;
+    }
+
+    private final int maxEntries;
+    private final Map<String, Integer> counts = new HashMap<>();
+    private File spillDir;
+    private DataOutputStream[] spillOuts;
+
+    public FrequencyTable() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public FrequencyTable(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Memory budget must be at least one entry");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Adds one occurrence of the given key.
+     *
+     * @param key the answer to count
+     * @throws IOException if spilling to disk fails
+     */
+    public void add(String key) throws IOException {
+        add(key, 1);
+    }
+
+    /**
+     * Adds several occurrences of the given key at once.
+     *
+     * @param key the answer to count
+     * @param count number of occurrences
+     * @throws IOException if spilling to disk fails
+     */
+    public void add(String key, int count) throws IOException {
+        counts.merge(key, count, Integer::sum);
+        if (counts.size() >= maxEntries) {
+            spill();
+        }
+    }
+
+    /**
+     * Returns true if part of the table has been written to disk.
+     */
+    public boolean hasSpilled() {
+        return spillOuts != null;
+    }
+
+    private void spill() throws IOException {
+        if (spillOuts == null) {
+            spillDir = Files.createTempDirectory("survey-freq").toFile();
+            spillOuts = new DataOutputStream[PARTITIONS];
+            for (int p = 0; p < PARTITIONS; p++) {
+                spillOuts[p] = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(partitionFile(p))));
+            }
+        }
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            DataOutputStream out = spillOuts[partition(entry.getKey(), 0)];
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        counts.clear();
+    }
+
+    /**
+     * Passes every distinct key and its exact count to the consumer.  If
+     * nothing was spilled the in-memory table is used directly; otherwise
+     * the remaining entries are spilled and each partition is merged in
+     * turn.
+     *
+     * @param consumer receiver of the aggregated entries
+     * @throws IOException if reading the spill files fails
+     */
+    public void forEach(EntryConsumer consumer) throws IOException {
+        if (spillOuts == null) {
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        spill();
+        for (DataOutputStream out : spillOuts) {
+            out.flush();
+        }
+        for (int p = 0; p < PARTITIONS; p++) {
+            merge(partitionFile(p), 0, consumer);
+        }
+    }
+
+    /**
+     * Merges the entries of one spill file and passes them to the
+     * consumer.  If the file holds more distinct keys than the budget, it
+     * is split into sub-partitions on the next level, which are merged
+     * in turn and deleted.
+     */
+    private void merge(File file, int level, EntryConsumer consumer) throws IOException {
+        Map<String, Integer> merged = new HashMap<>();
+        boolean fits = true;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                String key;
+                try {
+                    key = readString(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                merged.merge(key, in.readInt(), Integer::sum);
+                if (merged.size() > maxEntries && level < MAX_SPLIT_LEVEL) {
+                    fits = false;
+                    break;
+                }
+            }
+        }
+        if (fits) {
+            for (Map.Entry<String, Integer> entry : merged.entrySet()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        merged = null;
+        File[] parts = new File[PARTITIONS];
+        DataOutputStream[] outs = new DataOutputStream[PARTITIONS];
+        try {
+            for (int p = 0; p < PARTITIONS; p++) {
+                parts[p] = new File(file.getPath() + "." + p);
+                outs[p] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(parts[p])));
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    String key;
+                    try {
+                        key = readString(in);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    DataOutputStream out = outs[partition(key, level + 1)];
+                    writeString(out, key);
+                    out.writeInt(in.readInt());
+                }
+            }
+            for (DataOutputStream out : outs) {
+                out.close();
+            }
+            for (File part : parts) {
+                merge(part, level + 1, consumer);
+                part.delete();
+            }
+        } finally {
+            for (int p = 0; p < PARTITIONS; p++) {
+                if (outs[p] != null) {
+                    outs[p].close();
+                }
+                if (parts[p] != null) {
+                    parts[p].delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes any spill files.  The table must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        counts.clear();
+        if (spillOuts != null) {
+            for (int p = 0; p < PARTITIONS; p++) {
+                spillOuts[p].close();
+                partitionFile(p).delete();
+            }
+            spillDir.delete();
+            spillOuts = null;
+        }
+    }
+
+    private File partitionFile(int p) {
+        return new File(spillDir, "part-" + p + ".spill");
+    }
+
+    /**
+     * Returns the partition of a key on a split level.  Each level seeds
+     * the hash differently (FNV-1a over the characters, then mixed), so
+     * keys that shared a partition are spread over the next level.
+     */
+    private static int partition(String key, int level) {
+        int h = 0x811C9DC5 ^ (level * 0x9E3779B9);
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h & 0x7fffffff) % PARTITIONS;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
\ No newline at end of file
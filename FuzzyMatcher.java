@@ -0,0 +1,369 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches answers against a fixed set of accepted answers while allowing
+ * typos, measured as Levenshtein edits (inserted, deleted or replaced
+ * characters).  Answers are compared trimmed and case insensitively, as
+ * {@link TestQuestion#isCorrect} does for exact matches.
+ * <p>
+ * The accepted answers are compiled once into a trie.  An answer is
+ * matched by walking the trie while computing one row of the edit
+ * distance table per trie level, so accepted answers sharing a prefix
+ * share the work.  A branch is abandoned as soon as no cell of its row,
+ * plus the difference between the lengths left in the answer and in the
+ * accepted answers below it, is within budget.  Only the diagonal band
+ * of width {@code 2 * maxEdits + 1} is computed, so each visited node
+ * costs O(maxEdits) rather than O(answer length).  Exact matches are
+ * found with a hash lookup before the trie is searched.
+ * <p>
+ * The search visits more nodes the more accepted answers there are, but
+ * graded answers repeat heavily, so the results of searches are
+ * remembered (up to a limit) and a misspelling seen before costs a hash
+ * lookup like an exact match.
+ * <p>
+ * Short accepted answers tolerate fewer typos: an answer of length n
+ * accepts at most {@code n / 3} edits, so "no" never matches "go".
+ * Instances may be shared between threads.
+ * <p>
+ * A set of answers is graded with {@link #matchesSet}, which pairs
+ * answers with accepted answers one to one.  Pairing each answer with
+ * its nearest accepted answer is not enough: with "cat" and "bat"
+ * accepted, "hat" is nearest to "cat", yet {"cat", "hat"} should match
+ * by pairing "hat" with "bat".
+ */
+public final class FuzzyMatcher {
+    /** Characters of an accepted answer needed per tolerated edit. */
+    private static final int CHARS_PER_EDIT = 3;
+    /** Most searched answers whose result is remembered. */
+    private static final int MEMO_LIMIT = 1 << 16;
+
+    private final int maxEdits;
+    /** Budget of each distinct accepted answer. */
+    private final int[] budgets;
+    private final Map<String, Integer> exact;
+    /** Trie nodes; node 0 is the root. */
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    /** Index of the accepted answer ending at each node, or -1. */
+    private final int[] accepting;
+    /** Largest budget of the answers ending at or below each node. */
+    private final int[] subtreeBudget;
+    /** Shortest and longest answer ending at or below each node. */
+    private final int[] minLength;
+    private final int[] maxLength;
+    private final int longest;
+    /** Results of trie searches, by normalized answer. */
+    private final Map<String, Integer> memo = new ConcurrentHashMap<>();
+    /** Results of {@link #matchAll} searches, by normalized answer. */
+    private final Map<String, int[]> memoAll = new ConcurrentHashMap<>();
+
+    private FuzzyMatcher(int maxEdits, int[] budgets, Map<String, Integer> exact, char[] labels,
+                         int[] firstChild, int[] nextSibling, int[] accepting, int[] subtreeBudget,
+                         int[] minLength, int[] maxLength, int longest) {
+        this.maxEdits = maxEdits;
+        this.budgets = budgets;
+        this.exact = exact;
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.nextSibling = nextSibling;
+        this.accepting = accepting;
+        this.subtreeBudget = subtreeBudget;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.longest = longest;
+    }
+
+    /**
+     * Compiles a set of accepted answers.  Answers that are equal once
+     * trimmed and lowercased count as one.
+     *
+     * @param accepted the accepted answers
+     * @param maxEdits typos tolerated in an answer, at least 0
+     * @return the matcher
+     */
+    public static FuzzyMatcher compile(List<String> accepted, int maxEdits) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative");
+        }
+        Map<String, Integer> exact = new HashMap<>();
+        List<String> distinct = new ArrayList<>();
+        for (String a : accepted) {
+            String key = normalize(a);
+            if (!exact.containsKey(key)) {
+                exact.put(key, distinct.size());
+                distinct.add(key);
+            }
+        }
+        int[] budgets = new int[distinct.size()];
+        int capacity = 1;
+        int longest = 0;
+        for (int i = 0; i < budgets.length; i++) {
+            int length = distinct.get(i).length();
+            budgets[i] = Math.min(maxEdits, length / CHARS_PER_EDIT);
+            capacity += length;
+            longest = Math.max(longest, length);
+        }
+        char[] labels = new char[capacity];
+        int[] firstChild = new int[capacity];
+        int[] nextSibling = new int[capacity];
+        int[] accepting = new int[capacity];
+        int[] subtreeBudget = new int[capacity];
+        int[] minLength = new int[capacity];
+        int[] maxLength = new int[capacity];
+        Arrays.fill(firstChild, -1);
+        Arrays.fill(nextSibling, -1);
+        Arrays.fill(accepting, -1);
+        Arrays.fill(minLength, Integer.MAX_VALUE);
+        int nodes = 1;
+        for (int i = 0; i < budgets.length; i++) {
+            String s = distinct.get(i);
+            int node = 0;
+            for (int p = 0; ; p++) {
+                subtreeBudget[node] = Math.max(subtreeBudget[node], budgets[i]);
+                minLength[node] = Math.min(minLength[node], s.length());
+                maxLength[node] = Math.max(maxLength[node], s.length());
+                if (p == s.length()) {
+                    break;
+                }
+                char c = s.charAt(p);
+                int child = firstChild[node];
+                while (child >= 0 && labels[child] != c) {
+                    child = nextSibling[child];
+                }
+                if (child < 0) {
+                    child = nodes++;
+                    labels[child] = c;
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            accepting[node] = i;
+        }
+        return new FuzzyMatcher(maxEdits, budgets, exact, Arrays.copyOf(labels, nodes),
+                Arrays.copyOf(firstChild, nodes), Arrays.copyOf(nextSibling, nodes),
+                Arrays.copyOf(accepting, nodes), Arrays.copyOf(subtreeBudget, nodes),
+                Arrays.copyOf(minLength, nodes), Arrays.copyOf(maxLength, nodes), longest);
+    }
+
+    /** Returns the number of distinct accepted answers. */
+    public int size() {
+        return budgets.length;
+    }
+
+    /**
+     * Returns the index of the accepted answer closest to the given
+     * answer within its edit budget, or -1 if there is none.  Indices
+     * follow the order answers were first given to {@link #compile};
+     * ties go to the lowest index.
+     *
+     * @param answer the answer to match
+     */
+    public int match(String answer) {
+        String s = normalize(answer);
+        Integer hit = exact.get(s);
+        if (hit == null) {
+            hit = memo.get(s);
+        }
+        if (hit != null) {
+            return hit;
+        }
+        if (subtreeBudget[0] == 0) {
+            return -1;
+        }
+        int result = search(s);
+        if (memo.size() < MEMO_LIMIT) {
+            memo.put(s, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the indices of every accepted answer within its edit budget
+     * of the given answer, in ascending order.
+     *
+     * @param answer the answer to match
+     */
+    public int[] matchAll(String answer) {
+        String s = normalize(answer);
+        int[] hits = memoAll.get(s);
+        if (hits != null) {
+            return hits;
+        }
+        if (subtreeBudget[0] == 0) {
+            Integer hit = exact.get(s);
+            return hit == null ? new int[0] : new int[] {hit};
+        }
+        BitSet found = new BitSet(budgets.length);
+        search(s, found);
+        hits = found.stream().toArray();
+        if (memoAll.size() < MEMO_LIMIT) {
+            memoAll.put(s, hits);
+        }
+        return hits;
+    }
+
+    /**
+     * Returns true if the answers can be paired one to one with the
+     * accepted answers, each answer within the budget of its partner.
+     * As in an exact comparison of answer sets, answers that are equal
+     * once trimmed and lowercased count once.  Answers are paired with
+     * their nearest accepted answers first; only if that leaves accepted
+     * answers unpaired is a maximum bipartite matching searched for.
+     *
+     * @param answers the answers to match
+     */
+    public boolean matchesSet(List<String> answers) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String a : answers) {
+            distinct.add(normalize(a));
+        }
+        if (distinct.size() != budgets.length) {
+            return false;
+        }
+        BitSet nearest = new BitSet(budgets.length);
+        for (String a : distinct) {
+            int i = match(a);
+            if (i < 0) {
+                return false;
+            }
+            nearest.set(i);
+        }
+        if (nearest.cardinality() == budgets.length) {
+            return true;
+        }
+        int[][] candidates = new int[distinct.size()][];
+        int u = 0;
+        for (String a : distinct) {
+            candidates[u++] = matchAll(a);
+        }
+        // Kuhn's algorithm: find an augmenting path for each answer
+        int[] partner = new int[budgets.length];
+        Arrays.fill(partner, -1);
+        for (u = 0; u < candidates.length; u++) {
+            if (!augment(u, candidates, partner, new boolean[budgets.length])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pairs answer u with an accepted answer, moving answers paired
+     * earlier to other candidates if needed.
+     */
+    private static boolean augment(int u, int[][] candidates, int[] partner, boolean[] visited) {
+        for (int c : candidates[u]) {
+            if (!visited[c]) {
+                visited[c] = true;
+                if (partner[c] < 0 || augment(partner[c], candidates, partner, visited)) {
+                    partner[c] = u;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Searches the trie for the closest accepted answer within budget. */
+    private int search(String s) {
+        // best[0] is the smallest distance found so far, best[1] its answer
+        int[] best = {maxEdits + 1, -1};
+        search(s, best, null);
+        return best[1];
+    }
+
+    /** Searches the trie for every accepted answer within budget. */
+    private void search(String s, BitSet found) {
+        search(s, new int[] {maxEdits + 1, -1}, found);
+    }
+
+    private void search(String s, int[] best, BitSet found) {
+        int n = s.length();
+        // Rows deeper than n + maxEdits lie entirely outside the band
+        int[][] rows = new int[Math.min(longest, n + maxEdits) + 1][n + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+        // The root ends the empty accepted answer, n edits away
+        int a = accepting[0];
+        if (a >= 0 && n <= budgets[a]) {
+            if (found != null) {
+                found.set(a);
+            } else if (n < best[0]) {
+                best[0] = n;
+                best[1] = a;
+            }
+        }
+        search(0, 1, s, rows, best, found);
+    }
+
+    /**
+     * Visits the children of a node, filling row {@code depth} for each.
+     * When {@code found} is given every answer within budget is added to
+     * it and branches are not cut by the best distance so far.
+     */
+    private void search(int node, int depth, String s, int[][] rows, int[] best, BitSet found) {
+        if (depth >= rows.length) {
+            return;
+        }
+        int n = s.length();
+        int inf = maxEdits + 1;
+        int lo = Math.max(1, depth - maxEdits);
+        int hi = Math.min(n, depth + maxEdits);
+        int[] prev = rows[depth - 1];
+        int[] row = rows[depth];
+        for (int child = firstChild[node]; child >= 0; child = nextSibling[child]) {
+            char c = labels[child];
+            row[0] = depth;
+            if (lo > 1) {
+                row[lo - 1] = inf;
+            }
+            // Lower bound of the final distance through this node: a cell's
+            // distance plus the difference in the lengths still to match
+            int shortest = minLength[child] - depth;
+            int longestLeft = maxLength[child] - depth;
+            int bound = depth + Math.max(0, Math.max(n - longestLeft, shortest - n));
+            for (int j = lo; j <= hi; j++) {
+                int cost = s.charAt(j - 1) == c ? 0 : 1;
+                int d = Math.min(prev[j - 1] + cost, Math.min(prev[j], row[j - 1]) + 1);
+                row[j] = d;
+                int left = n - j;
+                bound = Math.min(bound, d + Math.max(0, Math.max(left - longestLeft, shortest - left)));
+            }
+            if (hi < n) {
+                row[hi + 1] = inf;
+            }
+            int a = accepting[child];
+            if (a >= 0 && hi == n) {
+                int distance = row[n];
+                if (found != null) {
+                    if (distance <= budgets[a]) {
+                        found.set(a);
+                    }
+                } else if (distance <= budgets[a]
+                        && (distance < best[0] || (distance == best[0] && a < best[1]))) {
+                    best[0] = distance;
+                    best[1] = a;
+                }
+            }
+            if (bound <= subtreeBudget[child] && (found != null || bound <= best[0]) && firstChild[child] >= 0) {
+                search(child, depth + 1, s, rows, best, found);
+            }
+        }
+    }
+
+    private static String normalize(String answer) {
+        return answer.trim().toLowerCase(Locale.ROOT);
+    }
+}
\ No newline at end of file
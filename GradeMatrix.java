@@ -0,0 +1,606 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persisted grades of every response set saved for a test, kept as a
+ * response by question correctness bit matrix.  Each question is a
+ * column of bits, one per response set, and each response set's score
+ * (number of correct answers) is kept alongside.
+ * <p>
+ * The matrix lives in a {@code <name>.grades} directory next to the
+ * response files: {@code matrix.bin} holds the scores, the bit columns
+ * and the correct answers each column was graded against,
+ * {@code rows.bin} the response file and respondent of each row and
+ * whether it was saved as a flagged duplicate submission, and a
+ * {@link ColumnarResponseStore} copy of the answers sits alongside.
+ * Rows are in the order the response sets were saved.  {@link #open}
+ * compares those with the test: when a key has been changed with
+ * {@link TestQuestion#modifyCorrectAnswers} only that question's column
+ * is read and regraded, and scores are adjusted for the response sets
+ * whose bit flipped, so fixing one question does not rescan every
+ * response file.  Response sets saved since the matrix was written are
+ * loaded, appended to the store and graded as new rows; the matrix is
+ * only rebuilt from all response files when some have been removed.
+ * After a rebuild or regrade the test's {@link Leaderboard} is rewritten
+ * from the new scores.
+ */
+public final class GradeMatrix {
+    private static final String MATRIX_FILE = "matrix.bin";
+    private static final String ROWS_FILE = "rows.bin";
+    private static final int MAGIC = 0x47524432; // "GRD2"
+    /** Magic, directory timestamp, files fingerprint, rows and questions. */
+    private static final int HEADER_BYTES = 28;
+
+    private final File directory;
+    /** lastModified() of the response directory when last checked. */
+    private long responseDirModified;
+    /** {@link #fingerprint} of the response file names, loadable or not. */
+    private long filesFingerprint;
+    /** Row names, read from {@link #ROWS_FILE} on first use. */
+    private String[] fileNames;
+    private String[] respondentIds;
+    private boolean[] duplicates;
+    /** Correct answers each column was graded against; see {@link #keyOf}. */
+    private final String[] keys;
+    private int[] scores;
+    private final long[][] columns;
+    private boolean rebuilt;
+    private int appended;
+    private final List<Integer> regraded = new ArrayList<>();
+
+    private GradeMatrix(File directory, long responseDirModified, long filesFingerprint, String[] keys,
+                        int[] scores, long[][] columns) {
+        this.directory = directory;
+        this.responseDirModified = responseDirModified;
+        this.filesFingerprint = filesFingerprint;
+        this.keys = keys;
+        this.scores = scores;
+        this.columns = columns;
+    }
+
+    /**
+     * Opens the grade matrix of a test, building it if there is none and
+     * bringing it up to date with the test's correct answers and the
+     * response files in the directory.  Changes are saved before
+     * returning.
+     *
+     * @param test the test, as currently keyed
+     * @param responseDir the test responses directory
+     * @return the up to date matrix
+     * @throws IOException if the matrix cannot be read or written
+     */
+    public static GradeMatrix open(Test test, File responseDir) throws IOException {
+        File dir = directoryFor(responseDir, test.getName());
+        GradeMatrix matrix = read(dir);
+        if (matrix == null || matrix.columns.length != test.size()) {
+            return build(test, responseDir, dir);
+        }
+        boolean dirty = false;
+        long modified = responseDir.lastModified();
+        if (modified != matrix.responseDirModified) {
+            // Index updates also touch the directory; only a different set
+            // of response files needs grading
+            String[] names = responseFileNames(responseDir, test.getName());
+            long fingerprint = fingerprint(names);
+            if (fingerprint != matrix.filesFingerprint && !matrix.append(test, responseDir, names)) {
+                return build(test, responseDir, dir);
+            }
+            matrix.filesFingerprint = fingerprint;
+            matrix.responseDirModified = modified;
+            dirty = true;
+        }
+        List<TestQuestion> questions = test.getQuestions();
+        ColumnarResponseStore store = null;
+        for (int q = 0; q < questions.size(); q++) {
+            if (!keyOf(questions.get(q)).equals(matrix.keys[q])) {
+                if (store == null) {
+                    store = ColumnarResponseStore.open(dir);
+                }
+                matrix.regrade(store, questions.get(q), q);
+                dirty = true;
+            }
+        }
+        if (!matrix.regraded.isEmpty()) {
+            Leaderboard.rebuild(responseDir, test, matrix);
+        }
+        if (dirty) {
+            matrix.write();
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns true if a grade matrix has been saved for the named test.
+     */
+    public static boolean exists(File responseDir, String name) {
+        return new File(directoryFor(responseDir, name), MATRIX_FILE).isFile();
+    }
+
+    public int getRowCount() {
+        return scores.length;
+    }
+
+    public int getQuestionCount() {
+        return columns.length;
+    }
+
+    /** Returns the name of the response file of a row. */
+    public String getFileName(int row) {
+        readRows();
+        return fileNames[row];
+    }
+
+    /** Returns the respondent ID of a row, or null if anonymous. */
+    public String getRespondentId(int row) {
+        readRows();
+        return respondentIds[row].isEmpty() ? null : respondentIds[row];
+    }
+
+    /**
+     * Returns true if a row's response set was saved as a duplicate of an
+     * earlier submission; see {@link ResponseSet#getDuplicateOf()}.
+     */
+    public boolean isDuplicate(int row) {
+        readRows();
+        return duplicates[row];
+    }
+
+    /** Returns the number of questions a row answered correctly. */
+    public int getScore(int row) {
+        return scores[row];
+    }
+
+    public boolean isCorrect(int row, int question) {
+        return (columns[question][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /** Returns how many rows answered a question correctly. */
+    public int getCorrectCount(int question) {
+        int count = 0;
+        for (long word : columns[question]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the correctness bits of a question, bit {@code r % 64} of
+     * word {@code r / 64} for row r.  The array is not copied.
+     */
+    long[] column(int question) {
+        return columns[question];
+    }
+
+    /** Returns true if the last {@link #open} rebuilt the whole matrix. */
+    public boolean wasRebuilt() {
+        return rebuilt;
+    }
+
+    /** Returns how many rows the last {@link #open} added for new response sets. */
+    public int getAppendedRowCount() {
+        return appended;
+    }
+
+    /** Returns the zero based questions the last {@link #open} regraded. */
+    public List<Integer> getRegradedQuestions() {
+        return new ArrayList<>(regraded);
+    }
+
+    /**
+     * Adds rows for the response files not in the matrix yet, in the
+     * order they were saved, and grades them.  New rows are graded
+     * against the test's current keys; a column whose key changed is
+     * regraded as a whole afterwards, which leaves their bits as they
+     * are.  Files that cannot be loaded are skipped, as in a rebuild.
+     *
+     * @param names all response file names of the test
+     * @return false if a file in the matrix is gone, or the columnar
+     *         store does not match the matrix, so it must be rebuilt
+     */
+    private boolean append(Test test, File responseDir, String[] names) throws IOException {
+        readRows();
+        ColumnarResponseStore store = ColumnarResponseStore.open(directory);
+        if (store.getRowCount() != scores.length) {
+            return false;
+        }
+        Set<String> current = new HashSet<>(Arrays.asList(names));
+        Set<String> known = new HashSet<>();
+        for (String name : fileNames) {
+            if (!current.contains(name)) {
+                return false;
+            }
+            known.add(name);
+        }
+        List<String> added = new ArrayList<>();
+        for (String name : names) {
+            if (!known.contains(name)) {
+                added.add(name);
+            }
+        }
+        String[] addedNames = sortBySaveOrder(responseDir, added.toArray(new String[0]));
+        List<ResponseSet> sets = new ArrayList<>();
+        List<String> loadedNames = new ArrayList<>();
+        for (String name : addedNames) {
+            try {
+                sets.add(ResponseSet.loadFromFile(new File(responseDir, name).getPath()));
+                loadedNames.add(name);
+            } catch (IOException | ClassNotFoundException e) {
+                Metrics.PARSE_FAILURES.increment();
+            }
+        }
+        if (sets.isEmpty()) {
+            return true;
+        }
+        List<TestQuestion> questions = test.getQuestions();
+        List<Question> plain = new ArrayList<>();
+        for (TestQuestion tq : questions) {
+            plain.add(tq.getQuestion());
+        }
+        store = store.append(plain, sets);
+
+        int from = scores.length;
+        int rows = store.getRowCount();
+        scores = Arrays.copyOf(scores, rows);
+        fileNames = Arrays.copyOf(fileNames, rows);
+        respondentIds = Arrays.copyOf(respondentIds, rows);
+        duplicates = Arrays.copyOf(duplicates, rows);
+        for (int r = from; r < rows; r++) {
+            String id = sets.get(r - from).getRespondentId();
+            fileNames[r] = loadedNames.get(r - from);
+            respondentIds[r] = id == null ? "" : id;
+            duplicates[r] = sets.get(r - from).getDuplicateOf() != null;
+        }
+        for (int q = 0; q < columns.length; q++) {
+            columns[q] = Arrays.copyOf(columns[q], (rows + 63) >>> 6);
+            gradeRows(store, questions.get(q), q, from, rows, columns[q]);
+            for (int r = from; r < rows; r++) {
+                if ((columns[q][r >>> 6] & (1L << r)) != 0) {
+                    scores[r]++;
+                }
+            }
+        }
+        appended = rows - from;
+        writeRows();
+        return true;
+    }
+
+    /**
+     * Regrades one column from the stored answers and adjusts the score
+     * of every row whose bit changed.
+     */
+    private void regrade(ColumnarResponseStore store, TestQuestion tq, int q) throws IOException {
+        long[] fresh = gradeColumn(store, tq, q, scores.length);
+        long[] old = columns[q];
+        for (int w = 0; w < fresh.length; w++) {
+            long diff = old[w] ^ fresh[w];
+            while (diff != 0) {
+                int bit = Long.numberOfTrailingZeros(diff);
+                scores[(w << 6) + bit] += (fresh[w] & (1L << bit)) != 0 ? 1 : -1;
+                diff &= diff - 1;
+            }
+        }
+        columns[q] = fresh;
+        keys[q] = keyOf(tq);
+        regraded.add(q);
+    }
+
+    /**
+     * Grades every row of one column.  Answers repeat heavily, so each
+     * distinct answer is only graded once.
+     */
+    private static long[] gradeColumn(ColumnarResponseStore store, TestQuestion tq, int q, int rows)
+            throws IOException {
+        long[] bits = new long[(rows + 63) >>> 6];
+        gradeRows(store, tq, q, 0, rows, bits);
+        return bits;
+    }
+
+    /**
+     * Sets the bits of the rows {@code from} (inclusive) to {@code to}
+     * (exclusive) that answered a question correctly.
+     */
+    private static void gradeRows(ColumnarResponseStore store, TestQuestion tq, int q, int from, int to,
+                                  long[] bits) throws IOException {
+        if (tq.isEssay() || tq.getCorrectAnswers() == null) {
+            return;
+        }
+        if (store.isChoiceColumn(q)) {
+            int[] masks = store.readChoiceMasks(q, from, to);
+            Map<Integer, Boolean> verdicts = new HashMap<>();
+            for (int r = from; r < to; r++) {
+                if (verdicts.computeIfAbsent(masks[r - from],
+                        m -> tq.isCorrect(ColumnarResponseStore.choiceAnswers(tq.getQuestion(), m)))) {
+                    bits[r >>> 6] |= 1L << r;
+                }
+            }
+        } else {
+            List<List<String>> distinct = new ArrayList<>();
+            int[] ids = store.encodeTextColumn(q, from, to, distinct);
+            boolean[] verdicts = new boolean[distinct.size()];
+            for (int i = 0; i < verdicts.length; i++) {
+                verdicts[i] = tq.isCorrect(distinct.get(i));
+            }
+            for (int r = from; r < to; r++) {
+                if (verdicts[ids[r - from]]) {
+                    bits[r >>> 6] |= 1L << r;
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads every response file of the test, writes their answers to a
+     * columnar store and grades each column.
+     */
+    private static GradeMatrix build(Test test, File responseDir, File dir) throws IOException {
+        dir.mkdirs();
+        // Read after creating the grades directory, which touches it
+        long modified = responseDir.lastModified();
+        String[] names = sortBySaveOrder(responseDir, responseFileNames(responseDir, test.getName()));
+        ResponseSet[] loaded = new ResponseSet[names.length];
+        Arrays.parallelSetAll(loaded, i -> {
+            try {
+                return ResponseSet.loadFromFile(new File(responseDir, names[i]).getPath());
+            } catch (IOException | ClassNotFoundException e) {
+                Metrics.PARSE_FAILURES.increment();
+                return null;
+            }
+        });
+        List<ResponseSet> sets = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < loaded.length; i++) {
+            if (loaded[i] != null) {
+                sets.add(loaded[i]);
+                fileNames.add(names[i]);
+            }
+        }
+        List<TestQuestion> questions = test.getQuestions();
+        List<Question> plain = new ArrayList<>();
+        for (TestQuestion tq : questions) {
+            plain.add(tq.getQuestion());
+        }
+        ColumnarResponseStore store = ColumnarResponseStore.write(plain, sets, dir);
+
+        int rows = sets.size();
+        String[] ids = new String[rows];
+        boolean[] duplicates = new boolean[rows];
+        for (int r = 0; r < rows; r++) {
+            String id = sets.get(r).getRespondentId();
+            ids[r] = id == null ? "" : id;
+            duplicates[r] = sets.get(r).getDuplicateOf() != null;
+        }
+        String[] keys = new String[questions.size()];
+        long[][] columns = new long[questions.size()][];
+        int[] scores = new int[rows];
+        for (int q = 0; q < questions.size(); q++) {
+            keys[q] = keyOf(questions.get(q));
+            columns[q] = gradeColumn(store, questions.get(q), q, rows);
+            for (int w = 0; w < columns[q].length; w++) {
+                long word = columns[q][w];
+                while (word != 0) {
+                    scores[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                    word &= word - 1;
+                }
+            }
+        }
+        GradeMatrix matrix = new GradeMatrix(dir, modified, fingerprint(names), keys, scores, columns);
+        matrix.fileNames = fileNames.toArray(new String[0]);
+        matrix.respondentIds = ids;
+        matrix.duplicates = duplicates;
+        matrix.rebuilt = true;
+        matrix.writeRows();
+        matrix.write();
+        Leaderboard.rebuild(responseDir, test, matrix);
+        return matrix;
+    }
+
+    /**
+     * Returns the names of the test's response files, in no particular
+     * order.
+     */
+    static String[] responseFileNames(File responseDir, String name) {
+        String prefix = name.replaceAll("[^a-zA-Z0-9_-]", "_") + "_";
+        String[] names = responseDir.list((d, f) -> f.startsWith(prefix) && f.endsWith(".resp"));
+        return names == null ? new String[0] : names;
+    }
+
+    /**
+     * Sorts response file names into the order the response sets were
+     * saved: by modification time, then by the time stamp in the name and
+     * numerically by the sequence number after it.  Modification times
+     * are read once, so files written meanwhile cannot break the sort.
+     * {@link ResponseIndex#rebuild} indexes files in this order too.  Names alone are not enough, since "_10" sorts
+     * before "_9" and each process numbers its files from 1.
+     */
+    static String[] sortBySaveOrder(File responseDir, String[] names) {
+        Map<String, Long> modified = new HashMap<>();
+        for (String name : names) {
+            modified.put(name, new File(responseDir, name).lastModified());
+        }
+        Arrays.sort(names, Comparator.<String>comparingLong(modified::get).thenComparing(GradeMatrix::compareNames));
+        return names;
+    }
+
+    /** Compares {@code <name>_<date>_<time>_<sequence>.resp} file names. */
+    private static int compareNames(String a, String b) {
+        int aSeq = a.lastIndexOf('_');
+        int bSeq = b.lastIndexOf('_');
+        int c = a.substring(0, aSeq).compareTo(b.substring(0, bSeq));
+        if (c != 0) {
+            return c;
+        }
+        String aNum = a.substring(aSeq + 1, a.length() - ".resp".length());
+        String bNum = b.substring(bSeq + 1, b.length() - ".resp".length());
+        c = Integer.compare(aNum.length(), bNum.length());
+        return c != 0 ? c : aNum.compareTo(bNum);
+    }
+
+    /**
+     * Returns a hash of a set of file names that does not depend on their
+     * order.
+     */
+    private static long fingerprint(String[] names) {
+        long h = names.length;
+        for (String name : names) {
+            long x = name.hashCode() * 0x9E3779B97F4A7C15L;
+            h += x ^ (x >>> 29);
+        }
+        return h;
+    }
+
+    /**
+     * Returns a hash of the {@link #keyOf keys} of all questions of a
+     * test, which changes whenever the grading of any question does.
+     */
+    static long keysFingerprint(Test test) {
+        long h = 0xcbf29ce484222325L;
+        for (TestQuestion tq : test.getQuestions()) {
+            String key = keyOf(tq);
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x100000001b3L;
+            }
+            // Separates the questions' keys
+            h = (h ^ 0xFFFF) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string that changes whenever the way a question is graded
+     * changes: its type, correct answers and typo allowance.
+     */
+    private static String keyOf(TestQuestion tq) {
+        List<String> correct = tq.getCorrectAnswers();
+        if (tq.isEssay() || correct == null) {
+            return "";
+        }
+        String key = tq.getQuestion().getClass().getSimpleName() + '\u0000' + String.join("\u0000", correct);
+        return tq.getMaxEdits() == 0 ? key : key + "\u0000~" + tq.getMaxEdits();
+    }
+
+    private static File directoryFor(File responseDir, String name) {
+        return new File(responseDir, name.replaceAll("[^a-zA-Z0-9_-]", "_") + ".grades");
+    }
+
+    private static GradeMatrix read(File dir) throws IOException {
+        File file = new File(dir, MATRIX_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+            return null;
+        }
+        long modified = buf.getLong();
+        long fingerprint = buf.getLong();
+        int rows = buf.getInt();
+        int questions = buf.getInt();
+        String[] keys = new String[questions];
+        for (int q = 0; q < questions; q++) {
+            byte[] key = new byte[buf.getInt()];
+            buf.get(key);
+            keys[q] = new String(key, StandardCharsets.UTF_8);
+        }
+        int[] scores = new int[rows];
+        buf.asIntBuffer().get(scores);
+        buf.position(buf.position() + rows * 4);
+        long[][] columns = new long[questions][(rows + 63) >>> 6];
+        LongBuffer words = buf.asLongBuffer();
+        for (long[] column : columns) {
+            words.get(column);
+        }
+        return new GradeMatrix(dir, modified, fingerprint, keys, scores, columns);
+    }
+
+    /**
+     * Writes the matrix to a temporary file and moves it into place.  The
+     * row names only change when rows are added and are written by
+     * {@link #writeRows}.
+     */
+    private void write() throws IOException {
+        byte[][] keyBytes = new byte[keys.length][];
+        int size = HEADER_BYTES + scores.length * 4;
+        for (int q = 0; q < keys.length; q++) {
+            keyBytes[q] = keys[q].getBytes(StandardCharsets.UTF_8);
+            size += 4 + keyBytes[q].length + columns[q].length * 8;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putLong(responseDirModified).putLong(filesFingerprint)
+                .putInt(scores.length).putInt(columns.length);
+        for (byte[] key : keyBytes) {
+            buf.putInt(key.length).put(key);
+        }
+        buf.asIntBuffer().put(scores);
+        buf.position(buf.position() + scores.length * 4);
+        LongBuffer words = buf.asLongBuffer();
+        for (long[] column : columns) {
+            words.put(column);
+        }
+        replace(MATRIX_FILE, buf.array());
+    }
+
+    /**
+     * Writes the file name, respondent ID and duplicate flag of every
+     * row.
+     */
+    private void writeRows() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (int r = 0; r < fileNames.length; r++) {
+                out.writeUTF(fileNames[r]);
+                out.writeUTF(respondentIds[r]);
+                out.writeBoolean(duplicates[r]);
+            }
+        }
+        replace(ROWS_FILE, bytes.toByteArray());
+    }
+
+    /** Reads the row names saved by {@link #writeRows} on first use. */
+    private void readRows() {
+        if (fileNames != null) {
+            return;
+        }
+        String[] names = new String[scores.length];
+        String[] ids = new String[scores.length];
+        boolean[] dups = new boolean[scores.length];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(new File(directory, ROWS_FILE))))) {
+            for (int r = 0; r < names.length; r++) {
+                names[r] = in.readUTF();
+                ids[r] = in.readUTF();
+                dups[r] = in.readBoolean();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read grade matrix rows", e);
+        }
+        fileNames = names;
+        respondentIds = ids;
+        duplicates = dups;
+    }
+
+    private void replace(String name, byte[] content) throws IOException {
+        File tmp = new File(directory, name + ".tmp");
+        Files.write(tmp.toPath(), content);
+        Files.move(tmp.toPath(), new File(directory, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
\ No newline at end of file
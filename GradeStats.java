@@ -0,0 +1,221 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Summary statistics of the grades of a test, built in one pass over its
+ * response sets without keeping the grades: count, mean and variance
+ * (Welford's algorithm), minimum and maximum, a histogram in 10 point
+ * bins and a {@link KllSketch} for percentiles.
+ * <p>
+ * Statistics of different shards or sittings merge exactly, except for
+ * the percentile estimates, which stay within the sketch's error.  They
+ * can be saved with {@link #saveToFile} and merged later, so percentiles
+ * across every sitting of a test can be reported without keeping the
+ * response sets.
+ */
+public class GradeStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final double[] REPORTED_PERCENTILES = {0.10, 0.25, 0.50, 0.75, 0.90, 0.99};
+
+    private final String testName;
+    private long count;
+    private double mean;
+    /** Sum of squared differences from the mean. */
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    /** Bins 0-9, 10-19, ... 90-100; the last bin includes 100. */
+    private final long[] histogram = new long[10];
+    private final KllSketch sketch = new KllSketch();
+
+    public GradeStats(String testName) {
+        this.testName = testName;
+    }
+
+    /**
+     * Grades every response set of a test saved in the directory.  Files
+     * are read one at a time and in parallel; each thread keeps its own
+     * statistics, which are merged at the end.
+     *
+     * @param test the test
+     * @param directory the test responses directory
+     * @return statistics of the grades
+     */
+    public static GradeStats collect(Test test, File directory) {
+        String prefix = test.getName().replaceAll("[^a-zA-Z0-9_-]", "_") + "_";
+        File[] files = directory.listFiles((d, f) -> f.startsWith(prefix) && f.endsWith(".resp"));
+        if (files == null) {
+            return new GradeStats(test.getName());
+        }
+        return Arrays.stream(files).parallel().collect(() -> new GradeStats(test.getName()),
+                (stats, file) -> {
+                    try {
+                        stats.add(grade(test, ResponseSet.loadFromFile(file.getPath())));
+                    } catch (IOException | ClassNotFoundException e) {
+                        // Skip files that cannot be parsed, as loadResponseSets does
+                        Metrics.PARSE_FAILURES.increment();
+                    }
+                },
+                GradeStats::merge);
+    }
+
+    /**
+     * Returns the grade of a response set out of 100, with every
+     * question carrying equal weight.
+     */
+    public static double grade(Test test, AnswerAccessor responseSet) {
+        return test.size() == 0 ? 0 : test.countCorrect(responseSet) * 100.0 / test.size();
+    }
+
+    public void add(double grade) {
+        count++;
+        double delta = grade - mean;
+        mean += delta / count;
+        m2 += delta * (grade - mean);
+        min = Math.min(min, grade);
+        max = Math.max(max, grade);
+        histogram[Math.max(0, Math.min(histogram.length - 1, (int) (grade / 10)))]++;
+        sketch.add(grade);
+    }
+
+    /**
+     * Adds the grades summarised by other statistics of the same test.
+     *
+     * @param other statistics of another shard or sitting
+     */
+    public void merge(GradeStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        sketch.merge(other.sketch);
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /** Returns the population variance of the grades. */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : m2 / count;
+    }
+
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /** Returns the estimated grade at the given quantile (0 to 1). */
+    public double quantile(double q) {
+        return sketch.quantile(q);
+    }
+
+    /** Returns the number of grades in each 10 point bin. */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Writes the statistics with a histogram drawn to scale.
+     *
+     * @param out destination for the report
+     */
+    public void print(PrintWriter out) {
+        out.println("Grade statistics for test: " + testName);
+        out.println("Responses: " + count);
+        if (count == 0) {
+            return;
+        }
+        out.printf("Mean: %.2f  Std dev: %.2f  Min: %.2f  Max: %.2f%n", getMean(), Math.sqrt(getVariance()),
+                min, max);
+        StringBuilder sb = new StringBuilder("Percentiles:");
+        for (int i = 0; i < REPORTED_PERCENTILES.length; i++) {
+            double p = REPORTED_PERCENTILES[i];
+            sb.append(i == 0 ? " " : ", ").append("p").append((int) Math.round(p * 100))
+                    .append(String.format(" %.1f", quantile(p)));
+        }
+        out.println(sb);
+        long largest = 0;
+        for (long bin : histogram) {
+            largest = Math.max(largest, bin);
+        }
+        for (int i = 0; i < histogram.length; i++) {
+            String label = (i * 10) + "-" + (i == histogram.length - 1 ? 100 : i * 10 + 9);
+            int bar = (int) Math.round(40.0 * histogram[i] / largest);
+            out.printf("%7s %8d %s%n", label, histogram[i], "#".repeat(bar));
+        }
+    }
+
+    /**
+     * Serializes these statistics to the given file.
+     *
+     * @param filePath destination file
+     * @throws IOException if an I/O error occurs
+     */
+    public void saveToFile(String filePath) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(filePath))) {
+            out.writeObject(this);
+        }
+    }
+
+    /**
+     * Loads statistics saved with {@link #saveToFile}.
+     *
+     * @param filePath source file
+     * @return the statistics
+     * @throws IOException if an I/O error occurs
+     * @throws ClassNotFoundException if the class cannot be resolved
+     */
+    public static GradeStats loadFromFile(String filePath) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filePath))) {
+            return (GradeStats) in.readObject();
+        }
+    }
+
+    /**
+     * Merges saved statistics of the same test, e.g. of several sittings.
+     *
+     * @param testName name of the test
+     * @param parts statistics to merge
+     * @return the combined statistics
+     */
+    public static GradeStats mergeAll(String testName, List<GradeStats> parts) {
+        GradeStats combined = new GradeStats(testName);
+        for (GradeStats part : parts) {
+            if (!part.testName.equals(testName)) {
+                throw new IllegalArgumentException("Statistics of test '" + part.testName
+                        + "' cannot be merged into '" + testName + "'");
+            }
+            combined.merge(part);
+        }
+        return combined;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,227 @@
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Classical item analysis of a test computed from its
+ * {@link GradeMatrix}: the difficulty (p-value), point-biserial
+ * discrimination and upper/lower group indices of each question, and
+ * KR-20 reliability for the whole test.  KR-20 is Cronbach's alpha for
+ * questions scored right or wrong.
+ * <p>
+ * Everything is computed with popcounts over the matrix's bit columns.
+ * Scores are split into bit planes (plane b marks the rows whose score
+ * has bit b set), so the total score of the rows answering a question
+ * correctly is the sum of {@code popcount(column & plane[b]) << b}, and
+ * the upper and lower 27% groups are bitsets ANDed with each column.
+ * Questions are analysed in parallel.
+ */
+public final class ItemAnalysis {
+    /** Share of respondents in each of the upper and lower groups. */
+    private static final double GROUP_SHARE = 0.27;
+
+    private final String testName;
+    private final int rows;
+    private final boolean[] gradable;
+    private final double[] pValue;
+    private final double[] pointBiserial;
+    private final double[] upper;
+    private final double[] lower;
+    private final double kr20;
+
+    private ItemAnalysis(String testName, int rows, boolean[] gradable, double[] pValue,
+                         double[] pointBiserial, double[] upper, double[] lower, double kr20) {
+        this.testName = testName;
+        this.rows = rows;
+        this.gradable = gradable;
+        this.pValue = pValue;
+        this.pointBiserial = pointBiserial;
+        this.upper = upper;
+        this.lower = lower;
+        this.kr20 = kr20;
+    }
+
+    /**
+     * Analyses the graded responses of a test.  Essay questions are not
+     * auto graded and are left out.
+     *
+     * @param test the test
+     * @param matrix the test's up to date grade matrix
+     * @return the analysis
+     */
+    public static ItemAnalysis analyze(Test test, GradeMatrix matrix) {
+        List<TestQuestion> questions = test.getQuestions();
+        int k = matrix.getQuestionCount();
+        int n = matrix.getRowCount();
+        int words = (n + 63) >>> 6;
+        boolean[] gradable = new boolean[k];
+        int items = 0;
+        for (int q = 0; q < k; q++) {
+            gradable[q] = !questions.get(q).isEssay() && questions.get(q).getCorrectAnswers() != null;
+            if (gradable[q]) {
+                items++;
+            }
+        }
+
+        int maxScore = 0;
+        long scoreSum = 0;
+        long scoreSquares = 0;
+        for (int r = 0; r < n; r++) {
+            int score = matrix.getScore(r);
+            maxScore = Math.max(maxScore, score);
+            scoreSum += score;
+            scoreSquares += (long) score * score;
+        }
+        double sum = scoreSum;
+        double sumSquares = scoreSquares;
+        long[][] planes = new long[32 - Integer.numberOfLeadingZeros(maxScore)][words];
+        for (int r = 0; r < n; r++) {
+            int score = matrix.getScore(r);
+            while (score != 0) {
+                int b = Integer.numberOfTrailingZeros(score);
+                planes[b][r >>> 6] |= 1L << r;
+                score &= score - 1;
+            }
+        }
+        int groupSize = (int) Math.round(n * GROUP_SHARE);
+        long[] upperGroup = group(matrix, maxScore, groupSize, true);
+        long[] lowerGroup = group(matrix, maxScore, groupSize, false);
+
+        double mean = n == 0 ? 0 : sum / n;
+        double variance = n == 0 ? 0 : sumSquares / n - mean * mean;
+        double[] pValue = new double[k];
+        double[] pointBiserial = new double[k];
+        double[] upper = new double[k];
+        double[] lower = new double[k];
+        IntStream.range(0, k).parallel().filter(q -> gradable[q]).forEach(q -> {
+            long[] column = matrix.column(q);
+            long correct = 0;
+            long correctScoreSum = 0;
+            long upperCorrect = 0;
+            long lowerCorrect = 0;
+            for (int w = 0; w < words; w++) {
+                long bits = column[w];
+                correct += Long.bitCount(bits);
+                upperCorrect += Long.bitCount(bits & upperGroup[w]);
+                lowerCorrect += Long.bitCount(bits & lowerGroup[w]);
+                for (int b = 0; b < planes.length; b++) {
+                    correctScoreSum += (long) Long.bitCount(bits & planes[b][w]) << b;
+                }
+            }
+            double p = n == 0 ? Double.NaN : (double) correct / n;
+            pValue[q] = p;
+            pointBiserial[q] = restCorrelation(n, p, correct, correctScoreSum, sum, sumSquares);
+            upper[q] = groupSize == 0 ? Double.NaN : (double) upperCorrect / groupSize;
+            lower[q] = groupSize == 0 ? Double.NaN : (double) lowerCorrect / groupSize;
+        });
+
+        double itemVariance = 0;
+        for (int q = 0; q < k; q++) {
+            if (gradable[q]) {
+                itemVariance += pValue[q] * (1 - pValue[q]);
+            }
+        }
+        double kr20 = items < 2 || variance <= 0 ? Double.NaN
+                : (double) items / (items - 1) * (1 - itemVariance / variance);
+        return new ItemAnalysis(test.getName(), n, gradable, pValue, pointBiserial, upper, lower, kr20);
+    }
+
+    /**
+     * Returns the correlation between one question's right/wrong score
+     * and the rest score (total score without that question), so the
+     * question does not inflate its own discrimination.
+     */
+    private static double restCorrelation(int n, double p, long correct, long correctScoreSum, double sum,
+                                          double sumSquares) {
+        if (n == 0 || p <= 0 || p >= 1) {
+            return Double.NaN;
+        }
+        // rest = total - x, and x * x = x
+        double meanRest = (sum - correct) / n;
+        double meanXRest = (double) (correctScoreSum - correct) / n;
+        double meanRestSquared = (sumSquares - 2.0 * correctScoreSum + correct) / n;
+        double varRest = meanRestSquared - meanRest * meanRest;
+        if (varRest <= 0) {
+            return Double.NaN;
+        }
+        return (meanXRest - p * meanRest) / Math.sqrt(p * (1 - p) * varRest);
+    }
+
+    /**
+     * Returns a bitset of the {@code size} rows with the highest (or
+     * lowest) scores.  Ties at the cut-off score are broken by row
+     * order, i.e. by when the responses were saved.
+     */
+    private static long[] group(GradeMatrix matrix, int maxScore, int size, boolean top) {
+        int n = matrix.getRowCount();
+        int[] counts = new int[maxScore + 1];
+        for (int r = 0; r < n; r++) {
+            counts[matrix.getScore(r)]++;
+        }
+        // Find the cut-off score and how many rows at it still fit
+        int cut = top ? maxScore : 0;
+        int remaining = size;
+        while (remaining > counts[cut]) {
+            remaining -= counts[cut];
+            cut += top ? -1 : 1;
+        }
+        long[] bits = new long[(n + 63) >>> 6];
+        for (int r = 0; r < n; r++) {
+            int score = matrix.getScore(r);
+            boolean inside = top ? score > cut : score < cut;
+            if (inside || (score == cut && remaining-- > 0)) {
+                bits[r >>> 6] |= 1L << r;
+            }
+        }
+        return bits;
+    }
+
+    /** Returns the proportion of respondents answering correctly. */
+    public double getPValue(int question) {
+        return pValue[question];
+    }
+
+    /** Returns the corrected point-biserial correlation of a question. */
+    public double getPointBiserial(int question) {
+        return pointBiserial[question];
+    }
+
+    /** Returns the p-value within the top 27% of scores. */
+    public double getUpperPValue(int question) {
+        return upper[question];
+    }
+
+    /** Returns the p-value within the bottom 27% of scores. */
+    public double getLowerPValue(int question) {
+        return lower[question];
+    }
+
+    /** Returns KR-20 (Cronbach's alpha), or NaN with fewer than two questions. */
+    public double getKr20() {
+        return kr20;
+    }
+
+    /**
+     * Writes the analysis as a table, one line per question.
+     *
+     * @param out destination for the report
+     */
+    public void print(PrintWriter out) {
+        out.println("Item analysis of test: " + testName + " (" + rows + " responses)");
+        out.printf("%4s %8s %15s %7s %7s %15s%n", "#", "p-value", "point-biserial", "upper", "lower",
+                "discrimination");
+        for (int q = 0; q < gradable.length; q++) {
+            if (!gradable[q]) {
+                out.printf("%4d %s%n", q + 1, "(not auto graded)");
+                continue;
+            }
+            out.printf("%4d %8s %15s %7s %7s %15s%n", q + 1, format(pValue[q]), format(pointBiserial[q]),
+                    format(upper[q]), format(lower[q]), format(upper[q] - lower[q]));
+        }
+        out.println("KR-20 (Cronbach's alpha): " + format(kr20));
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format("%.2f", value);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * KLL quantile sketch (Karnin, Lang and Liberty, "Optimal Quantile
+ * Approximation in Streams").  Keeps a bounded number of values however
+ * many are added, and answers quantile queries with a rank error of
+ * about 1.7% at the default size.  Two sketches of the same size can be
+ * merged, which gives the same accuracy as one sketch fed both streams.
+ * <p>
+ * Values are kept in levels.  A value at level h stands for 2^h of the
+ * original values.  When a level is full it is sorted and every other
+ * value, starting at a random offset, is promoted to the next level;
+ * lower levels get geometrically smaller capacities.
+ */
+public class KllSketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /** Capacity of the top level; controls the accuracy. */
+    public static final int DEFAULT_K = 200;
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] levels = new double[0][];
+    private int[] sizes = new int[0];
+    /** Number of values held across all levels. */
+    private int size;
+    /** Sum of the level capacities; compaction starts when size reaches it. */
+    private int maxSize;
+    /** Number of values added, including merged sketches. */
+    private long count;
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be at least 8");
+        }
+        this.k = k;
+        grow();
+    }
+
+    public void add(double value) {
+        append(0, value);
+        size++;
+        count++;
+        if (size >= maxSize) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds every value summarised by another sketch to this one.
+     *
+     * @param other a sketch with the same k
+     */
+    public void merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge sketches of size " + k + " and " + other.k);
+        }
+        while (levels.length < other.levels.length) {
+            grow();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        size += other.size;
+        count += other.count;
+        while (size >= maxSize) {
+            compress();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the value at the given quantile, or NaN if
+     * the sketch is empty.
+     *
+     * @param q quantile between 0 and 1
+     */
+    public double quantile(double q) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        double[] values = new double[size];
+        long[] weights = new long[size];
+        Integer[] order = new Integer[size];
+        int n = 0;
+        long total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = 1L << h;
+                order[n] = n;
+                total += weights[n];
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double rank = Math.max(1, Math.ceil(q * total));
+        long seen = 0;
+        for (int i : order) {
+            seen += weights[i];
+            if (seen >= rank) {
+                return values[i];
+            }
+        }
+        return values[order[size - 1]];
+    }
+
+    /** Drops unused array capacity so saved sketches stay small. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        for (int h = 0; h < levels.length; h++) {
+            levels[h] = Arrays.copyOf(levels[h], Math.max(1, sizes[h]));
+        }
+        out.defaultWriteObject();
+    }
+
+    private int capacity(int h) {
+        int depth = levels.length - 1 - h;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        levels[levels.length - 1] = new double[8];
+        maxSize = 0;
+        for (int h = 0; h < levels.length; h++) {
+            maxSize += capacity(h);
+        }
+    }
+
+    private void append(int h, double value) {
+        if (sizes[h] == levels[h].length) {
+            levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    /** Compacts the lowest full level into the one above it. */
+    private void compress() {
+        for (int h = 0; h < levels.length; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == levels.length) {
+                    grow();
+                }
+                double[] level = levels[h];
+                int n = sizes[h];
+                Arrays.sort(level, 0, n);
+                // With an odd count the smallest value stays behind
+                int keep = n % 2;
+                int offset = ThreadLocalRandom.current().nextInt(2);
+                for (int i = keep + offset; i < n; i += 2) {
+                    append(h + 1, level[i]);
+                }
+                sizes[h] = keep;
+                size -= (n - keep) / 2;
+                if (size < maxSize) {
+                    return;
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,545 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rank index of the scores of a test.  Scores (number of questions
+ * answered correctly) are counted per score in a Fenwick tree, so the
+ * rank of a respondent is the number of higher scores plus one, found
+ * in O(log questions) without grading or sorting anything.  Tied
+ * respondents share a rank.  Within a score, respondents are kept in
+ * the order they were graded, which gives the top of the board.
+ * <p>
+ * Respondents are identified by respondent ID, or by response file name
+ * for anonymous responses, and only their latest graded response set
+ * counts.  Grading a new response set appends one (respondent, file,
+ * score) record to {@code <name>.rank} next to the test's responses.
+ * The board is also kept in {@code <name>.rankidx}: the count of each
+ * score, the entries in rank order and a hash table from respondent to
+ * entry.  Opening the board maps that index and replays only the
+ * records appended after it, so a lookup reads a few pages rather than
+ * the whole log.  When more than {@value #MAX_TAIL} records have been
+ * appended since, opening writes a new index, and rewrites the log with
+ * one record per respondent once most of its records are superseded.
+ * <p>
+ * The log header holds a fingerprint of the answer key the scores were
+ * graded against.  When the test's key no longer matches, opening the
+ * board regrades through the {@link GradeMatrix} and rewrites the log
+ * from the new scores, as does any regrade of the matrix.
+ */
+public final class Leaderboard {
+    private static final int LOG_MAGIC = 0x524E4B32; // "RNK2"
+    private static final int INDEX_MAGIC = 0x524E4B49; // "RNKI"
+    /** Magic, generation and key fingerprint. */
+    private static final int LOG_HEADER_BYTES = 20;
+    /** Magic, log generation, log length, max score, size and slots. */
+    private static final int INDEX_HEADER_BYTES = 32;
+    /** Records appended after the index that cause it to be rewritten. */
+    private static final int MAX_TAIL = 1000;
+    /** Serializes file access within this JVM; FileLock only excludes other processes. */
+    private static final Object LOCK = new Object();
+
+    private final String testName;
+    private final int maxScore;
+    /** Fenwick tree over scores 0..maxScore, stored at index score + 1. */
+    private final int[] tree;
+    /** Respondents per score. */
+    private final int[] counts;
+    private int size;
+    /** Mapped {@code .rankidx} file, or null if the log is replayed from the start. */
+    private ByteBuffer index;
+    private int indexSlots;
+    private int indexEntries;
+    /** Scores of the respondents recorded after the index. */
+    private final Map<String, Integer> scores = new HashMap<>();
+    /** Respondent to response file name, per score, in grading order, after the index. */
+    private final List<LinkedHashMap<String, String>> byScore = new ArrayList<>();
+
+    private Leaderboard(String testName, int maxScore) {
+        this.testName = testName;
+        this.maxScore = maxScore;
+        this.tree = new int[maxScore + 2];
+        this.counts = new int[maxScore + 1];
+        for (int s = 0; s <= maxScore; s++) {
+            byScore.add(new LinkedHashMap<>());
+        }
+    }
+
+    /** One respondent's place on the board. */
+    public static final class Entry {
+        private final int rank;
+        private final String respondent;
+        private final String fileName;
+        private final int score;
+
+        Entry(int rank, String respondent, String fileName, int score) {
+            this.rank = rank;
+            this.respondent = respondent;
+            this.fileName = fileName;
+            this.score = score;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        /** Returns the respondent ID, or the file name of an anonymous response. */
+        public String getRespondent() {
+            return respondent;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Opens the board of a test.  If there is none yet, or it was graded
+     * against a different answer key, it is built from the saved response
+     * sets through the test's {@link GradeMatrix}.
+     *
+     * @param responseDir the test responses directory
+     * @param test the test
+     * @return the board
+     * @throws IOException if the board cannot be read or built
+     */
+    public static Leaderboard open(File responseDir, Test test) throws IOException {
+        long keys = GradeMatrix.keysFingerprint(test);
+        Leaderboard board = load(responseDir, test, keys);
+        if (board == null) {
+            GradeMatrix matrix = GradeMatrix.open(test, responseDir);
+            board = load(responseDir, test, keys);
+            if (board == null) {
+                rebuild(responseDir, test, matrix);
+                board = load(responseDir, test, keys);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Grades a newly saved response set and records its score.  Flagged
+     * duplicate submissions are not recorded.
+     *
+     * @param responseDir directory the response set was saved to
+     * @param test the test it answers
+     * @param rs the response set
+     * @param fileName name of its response file
+     * @return the score recorded, or -1 for a duplicate
+     * @throws IOException if the board cannot be updated
+     */
+    public static int record(File responseDir, Test test, ResponseSet rs, String fileName) throws IOException {
+        if (rs.getDuplicateOf() != null) {
+            return -1;
+        }
+        int score = test.countCorrect(rs);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(rs.getRespondentId() != null ? rs.getRespondentId() : fileName);
+        out.writeUTF(fileName);
+        out.writeInt(score);
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        synchronized (LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile(responseDir, test.getName()).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Held until the channel is closed
+                lockChannel.lock();
+                try (FileChannel channel = FileChannel.open(logFile(responseDir, test.getName()).toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    if (channel.size() == 0) {
+                        writeFully(channel, logHeader(GradeMatrix.keysFingerprint(test)), 0);
+                    }
+                    writeFully(channel, record, channel.size());
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Replaces the board with the scores of a grade matrix.  Rows are in
+     * save order, so a respondent's latest response set wins.  Flagged
+     * duplicate submissions are skipped, as {@link #record} skips them.
+     */
+    static void rebuild(File responseDir, Test test, GradeMatrix matrix) throws IOException {
+        Leaderboard board = new Leaderboard(test.getName(), matrix.getQuestionCount());
+        for (int r = 0; r < matrix.getRowCount(); r++) {
+            if (matrix.isDuplicate(r)) {
+                continue;
+            }
+            String id = matrix.getRespondentId(r);
+            board.put(id != null ? id : matrix.getFileName(r), matrix.getFileName(r), matrix.getScore(r));
+        }
+        synchronized (LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile(responseDir, test.getName()).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                lockChannel.lock();
+                board.rewrite(responseDir, board.top(board.size), GradeMatrix.keysFingerprint(test));
+            }
+        }
+    }
+
+    public String getTestName() {
+        return testName;
+    }
+
+    /** Returns the number of respondents on the board. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns a respondent's score, or -1 if they are not on the board. */
+    public int getScore(String respondent) {
+        Integer score = scores.get(respondent);
+        return score != null ? score : indexScore(respondent);
+    }
+
+    /**
+     * Returns a respondent's rank, 1 being the best, or 0 if they are not
+     * on the board.
+     */
+    public int rankOf(String respondent) {
+        int score = getScore(respondent);
+        return score < 0 ? 0 : countAbove(score) + 1;
+    }
+
+    /**
+     * Returns the best entries, highest score first and in grading order
+     * within a score.
+     *
+     * @param n maximum number of entries
+     * @return up to n entries
+     */
+    public List<Entry> top(int n) {
+        List<Entry> entries = new ArrayList<>();
+        int above = 0;
+        // Index entries are in rank order; pos is the next one not yet passed
+        int pos = index == null ? 0 : entriesStart();
+        int indexed = 0;
+        for (int s = maxScore; s >= 0 && entries.size() < n; s--) {
+            while (indexed < indexEntries && entries.size() < n) {
+                int fileAt = pos + 4 + index.getInt(pos);
+                int scoreAt = fileAt + 4 + index.getInt(fileAt);
+                if (index.getInt(scoreAt) != s) {
+                    break;
+                }
+                String respondent = string(pos);
+                if (!scores.containsKey(respondent)) {
+                    entries.add(new Entry(above + 1, respondent, string(fileAt), s));
+                }
+                pos = scoreAt + 4;
+                indexed++;
+            }
+            Iterator<Map.Entry<String, String>> it = byScore.get(s).entrySet().iterator();
+            while (it.hasNext() && entries.size() < n) {
+                Map.Entry<String, String> e = it.next();
+                entries.add(new Entry(above + 1, e.getKey(), e.getValue(), s));
+            }
+            above += counts[s];
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the log, and the index if it is up to date with the log.
+     * Returns null if there is no log or it was graded against another
+     * key, so the board must be rebuilt.
+     */
+    private static Leaderboard load(File responseDir, Test test, long keys) throws IOException {
+        File logFile = logFile(responseDir, test.getName());
+        synchronized (LOCK) {
+            if (!logFile.isFile()) {
+                return null;
+            }
+            try (FileChannel lockChannel = FileChannel.open(lockFile(responseDir, test.getName()).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                lockChannel.lock();
+                Leaderboard board = new Leaderboard(test.getName(), test.size());
+                long generation;
+                long logLength;
+                int tailRecords = 0;
+                try (FileChannel log = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                    logLength = log.size();
+                    if (logLength < LOG_HEADER_BYTES) {
+                        return null;
+                    }
+                    ByteBuffer header = readFully(log, 0, LOG_HEADER_BYTES);
+                    if (header.getInt(0) != LOG_MAGIC || header.getLong(12) != keys) {
+                        return null;
+                    }
+                    generation = header.getLong(4);
+                    long from = board.mapIndex(indexFile(responseDir, test.getName()), generation, logLength);
+                    ByteBuffer tail = readFully(log, from, (int) (logLength - from));
+                    DataInputStream in = new DataInputStream(new ByteArrayInputStream(tail.array(), 0, tail.position()));
+                    while (true) {
+                        String respondent;
+                        String fileName;
+                        int score;
+                        try {
+                            respondent = in.readUTF();
+                            fileName = in.readUTF();
+                            score = in.readInt();
+                        } catch (EOFException e) {
+                            // End of log, or a record cut short by a crash
+                            break;
+                        }
+                        board.put(respondent, fileName, score);
+                        tailRecords++;
+                    }
+                }
+                if (tailRecords > MAX_TAIL) {
+                    board.writeIndex(responseDir, generation, logLength);
+                }
+                return board;
+            }
+        }
+    }
+
+    /**
+     * Maps the index if it was written for this log and returns the log
+     * position replay starts from.
+     */
+    private long mapIndex(File file, long generation, long logLength) throws IOException {
+        if (!file.isFile()) {
+            return LOG_HEADER_BYTES;
+        }
+        ByteBuffer mapped;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (mapped.capacity() < INDEX_HEADER_BYTES || mapped.getInt(0) != INDEX_MAGIC
+                || mapped.getLong(4) != generation || mapped.getLong(12) > logLength
+                || mapped.getInt(20) != maxScore) {
+            return LOG_HEADER_BYTES;
+        }
+        index = mapped;
+        indexEntries = mapped.getInt(24);
+        indexSlots = mapped.getInt(28);
+        size = indexEntries;
+        for (int s = 0; s <= maxScore; s++) {
+            counts[s] = mapped.getInt(INDEX_HEADER_BYTES + s * 4);
+            for (int i = s + 1; i < tree.length; i += i & -i) {
+                tree[i] += counts[s];
+            }
+        }
+        return mapped.getLong(12);
+    }
+
+    /**
+     * Writes the log afresh with one record per respondent under a new
+     * generation, followed by an index covering all of it.
+     */
+    private void rewrite(File responseDir, List<Entry> entries, long keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        long generation = ThreadLocalRandom.current().nextLong();
+        ByteBuffer header = logHeader(keys);
+        header.putLong(4, generation);
+        out.write(header.array());
+        for (Entry e : entries) {
+            out.writeUTF(e.getRespondent());
+            out.writeUTF(e.getFileName());
+            out.writeInt(e.getScore());
+        }
+        replace(logFile(responseDir, testName), bytes.toByteArray());
+        writeIndex(responseDir, entries, generation, bytes.size());
+    }
+
+    /**
+     * Writes an index of the board as it is now, covering the log up to
+     * the given length.  The log is rewritten first when most of its
+     * records have been superseded.
+     */
+    private void writeIndex(File responseDir, long generation, long logLength) throws IOException {
+        List<Entry> entries = top(size);
+        long compactLength = LOG_HEADER_BYTES;
+        for (Entry e : entries) {
+            compactLength += 8 + e.getRespondent().length() + e.getFileName().length();
+        }
+        if (logLength > 2 * compactLength) {
+            ByteBuffer header;
+            try (FileChannel log = FileChannel.open(logFile(responseDir, testName).toPath(),
+                    StandardOpenOption.READ)) {
+                header = readFully(log, 0, LOG_HEADER_BYTES);
+            }
+            rewrite(responseDir, entries, header.getLong(12));
+        } else {
+            writeIndex(responseDir, entries, generation, logLength);
+        }
+    }
+
+    private void writeIndex(File responseDir, List<Entry> entries, long generation, long logLength)
+            throws IOException {
+        int slots = entries.size() * 2 + 1;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeLong(generation);
+        out.writeLong(logLength);
+        out.writeInt(maxScore);
+        out.writeInt(entries.size());
+        out.writeInt(slots);
+        for (int s = 0; s <= maxScore; s++) {
+            out.writeInt(counts[s]);
+        }
+        int entriesStart = INDEX_HEADER_BYTES + (maxScore + 1) * 4 + slots * 4;
+        int[] table = new int[slots];
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        for (Entry e : entries) {
+            int slot = slot(e.getRespondent(), slots);
+            while (table[slot] != 0) {
+                slot = (slot + 1) % slots;
+            }
+            table[slot] = entriesStart + entryOut.size();
+            writeString(entryOut, e.getRespondent());
+            writeString(entryOut, e.getFileName());
+            entryOut.writeInt(e.getScore());
+        }
+        for (int position : table) {
+            out.writeInt(position);
+        }
+        entryBytes.writeTo(out);
+        replace(indexFile(responseDir, testName), bytes.toByteArray());
+    }
+
+    /** Returns a respondent's score in the index, or -1. */
+    private int indexScore(String respondent) {
+        if (index == null) {
+            return -1;
+        }
+        int slotsStart = INDEX_HEADER_BYTES + (maxScore + 1) * 4;
+        for (int slot = slot(respondent, indexSlots); ; slot = (slot + 1) % indexSlots) {
+            int pos = index.getInt(slotsStart + slot * 4);
+            if (pos == 0) {
+                return -1;
+            }
+            if (string(pos).equals(respondent)) {
+                int fileAt = pos + 4 + index.getInt(pos);
+                return index.getInt(fileAt + 4 + index.getInt(fileAt));
+            }
+        }
+    }
+
+    private int entriesStart() {
+        return INDEX_HEADER_BYTES + (maxScore + 1) * 4 + indexSlots * 4;
+    }
+
+    /** Decodes the length-prefixed UTF-8 string at a position of the index. */
+    private String string(int pos) {
+        byte[] bytes = new byte[index.getInt(pos)];
+        index.get(pos + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void put(String respondent, String fileName, int score) {
+        score = Math.max(0, Math.min(maxScore, score));
+        Integer previous = scores.put(respondent, score);
+        if (previous != null) {
+            byScore.get(previous).remove(respondent);
+        } else {
+            int indexed = indexScore(respondent);
+            previous = indexed < 0 ? null : indexed;
+        }
+        if (previous != null) {
+            add(previous, -1);
+        } else {
+            size++;
+        }
+        byScore.get(score).put(respondent, fileName);
+        add(score, 1);
+    }
+
+    private void add(int score, int delta) {
+        counts[score] += delta;
+        for (int i = score + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /** Returns how many respondents scored more than the given score. */
+    private int countAbove(int score) {
+        int atOrBelow = 0;
+        for (int i = score + 1; i > 0; i -= i & -i) {
+            atOrBelow += tree[i];
+        }
+        return size - atOrBelow;
+    }
+
+    private static ByteBuffer logHeader(long keys) {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+        header.putInt(0, LOG_MAGIC).putLong(4, ThreadLocalRandom.current().nextLong()).putLong(12, keys);
+        return header;
+    }
+
+    private static int slot(String respondent, int slots) {
+        int h = respondent.hashCode();
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % slots;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) {
+                break;
+            }
+        }
+        return buf;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf, position + buf.position());
+        }
+    }
+
+    private static void replace(File file, byte[] content) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.write(tmp.toPath(), content);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String safeName(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_-]", "_");
+    }
+
+    private static File logFile(File responseDir, String name) {
+        return new File(responseDir, safeName(name) + ".rank");
+    }
+
+    private static File indexFile(File responseDir, String name) {
+        return new File(responseDir, safeName(name) + ".rankidx");
+    }
+
+    private static File lockFile(File responseDir, String name) {
+        return new File(responseDir, safeName(name) + ".ranklock");
+    }
+}
\ No newline at end of file
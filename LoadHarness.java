@@ -0,0 +1,419 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end load test for the interactive application.  Starts several
+ * {@link Main} JVMs at once and drives each through the real test menu
+ * with scripted standard input: load a test, take it, save it, tabulate
+ * it and grade the session's own response by respondent ID.  The
+ * latency of each operation is measured from the moment its menu choice
+ * is sent until the menu prompt comes back, so it includes everything a
+ * user would wait for.
+ * <p>
+ * The response directory is grown with {@link FixtureGenerator} before
+ * each round so the same flows are measured against larger and larger
+ * data.  Median and tail latencies of every round are appended to a CSV
+ * results file and compared with the previous run of the same
+ * configuration, so regressions in the menu flows show up between
+ * builds.
+ * <p>
+ * Separate JVMs are used rather than threads because {@link Main} keeps
+ * its Scanner and current survey or test in static fields.
+ * <p>
+ * Usage: {@code java LoadHarness <data dir> [--sessions N] [--iterations N]
+ * [--responses N,N,...] [--questions N] [--results FILE]}.  The data
+ * directory gets its own {@code tests} and {@code test_responses}
+ * directories, which are emptied at the start of each run.
+ */
+public class LoadHarness {
+    static final List<String> OPERATIONS = Collections.unmodifiableList(
+            Arrays.asList("load", "take", "save", "tabulate", "grade"));
+
+    private static final String TEST_NAME = "LoadTest";
+    private static final String MENU_PROMPT = "Select an option: ";
+    private static final String SELECT_PROMPT = "(or 0 to cancel): ";
+    private static final int TAIL_CHARS = 1 << 16;
+    private static final String CSV_HEADER = "timestamp,responses,sessions,questions,operation,count,"
+            + "p50_ms,p90_ms,p99_ms,max_ms";
+
+    private final File testDir;
+    private final File responseDir;
+    private final File workDir;
+    private final int sessions;
+    private final int iterations;
+    private final Test test;
+
+    public LoadHarness(File root, int sessions, int iterations, int questions) throws IOException {
+        this.testDir = new File(root, "tests");
+        this.responseDir = new File(root, "test_responses");
+        // Main resolves its data directories relative to "..", so the
+        // sessions run one level below the data directory
+        this.workDir = new File(root, "work");
+        this.sessions = sessions;
+        this.iterations = iterations;
+        // Every run starts from the same data so results stay comparable
+        clear(testDir);
+        clear(responseDir);
+        workDir.mkdirs();
+        FixtureGenerator generator = new FixtureGenerator(1);
+        this.test = generator.generateTest(TEST_NAME, questions);
+        test.saveToFile(new File(testDir, TEST_NAME + ".tst").getPath());
+    }
+
+    private static void clear(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.mkdirs();
+    }
+
+    /**
+     * Adds generated response sets until the response directory holds at
+     * least the given number.
+     */
+    public void growResponses(int target) throws IOException {
+        String[] existing = responseDir.list((dir, name) -> name.endsWith(".resp"));
+        int have = existing == null ? 0 : existing.length;
+        if (have < target) {
+            new FixtureGenerator(have).writeResponses(test, target - have, responseDir.getPath());
+        }
+    }
+
+    /**
+     * Runs every session to completion and returns the latencies of each
+     * operation in nanoseconds, keyed by operation name.
+     */
+    public Map<String, List<Long>> runRound() throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(sessions);
+        try {
+            List<Future<Map<String, List<Long>>>> results = new ArrayList<>();
+            for (int s = 0; s < sessions; s++) {
+                int id = s;
+                results.add(pool.submit(() -> new Session(id).run()));
+            }
+            Map<String, List<Long>> merged = newLatencyMap();
+            for (Future<Map<String, List<Long>>> result : results) {
+                for (Map.Entry<String, List<Long>> e : result.get().entrySet()) {
+                    merged.get(e.getKey()).addAll(e.getValue());
+                }
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for sessions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Map<String, List<Long>> newLatencyMap() {
+        Map<String, List<Long>> map = new LinkedHashMap<>();
+        for (String op : OPERATIONS) {
+            map.put(op, new ArrayList<>());
+        }
+        return map;
+    }
+
+    /**
+     * One interactive Main process driven through the test menu.
+     */
+    private class Session {
+        private final int id;
+        private final Random random;
+        private Process process;
+        private Writer in;
+        private BufferedReader out;
+
+        Session(int id) {
+            this.id = id;
+            this.random = new Random(id);
+        }
+
+        Map<String, List<Long>> run() throws IOException {
+            Map<String, List<Long>> latencies = newLatencyMap();
+            String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+            process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "Main")
+                    .directory(workDir).redirectErrorStream(true).start();
+            // Main reads and writes with the platform default charset
+            in = new OutputStreamWriter(process.getOutputStream(), Charset.defaultCharset());
+            out = new BufferedReader(new InputStreamReader(process.getInputStream(), Charset.defaultCharset()));
+            try {
+                expect(MENU_PROMPT);
+                send("2");
+                expect(MENU_PROMPT);
+                for (int i = 0; i < iterations; i++) {
+                    long start = System.nanoTime();
+                    send("4");
+                    send(fileIndex(expect(SELECT_PROMPT), TEST_NAME + ".tst"));
+                    expectMenu("Test '" + TEST_NAME + "' loaded");
+                    latencies.get("load").add(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    send("6");
+                    send(takeScript());
+                    expectMenu("Responses saved");
+                    latencies.get("take").add(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    send("5");
+                    send(TEST_NAME + "_session" + id + ".tst");
+                    expectMenu("Test saved");
+                    latencies.get("save").add(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    send("8");
+                    expectMenu("Tabulation of test");
+                    latencies.get("tabulate").add(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    send("9");
+                    send(fileIndex(expect(SELECT_PROMPT), TEST_NAME + ".tst"));
+                    expect("Enter a respondent ID");
+                    send(respondentId());
+                    expectMenu("You received");
+                    latencies.get("grade").add(System.nanoTime() - start);
+                }
+                send("10");
+                send("3");
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            } finally {
+                process.destroy();
+            }
+            return latencies;
+        }
+
+        /**
+         * Builds the input lines for one pass through the test, answering
+         * each question the way a user would type it.
+         */
+        private String takeScript() {
+            StringBuilder sb = new StringBuilder(TEST_NAME).append('\n').append(respondentId());
+            List<List<String>> sheet = new FixtureGenerator(random.nextLong()).answerSheet(
+                    test.getQuestions(), random);
+            for (int q = 0; q < sheet.size(); q++) {
+                Question question = test.getQuestions().get(q).getQuestion();
+                for (String answer : sheet.get(q)) {
+                    if (question instanceof Matching) {
+                        answer = answer.substring(answer.indexOf('-') + 1);
+                    }
+                    sb.append('\n').append(answer);
+                    if (question instanceof Essay) {
+                        sb.append('\n');
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        /** Each session answers under its own respondent ID. */
+        private String respondentId() {
+            return "session" + id;
+        }
+
+        private void send(String line) throws IOException {
+            in.write(line);
+            in.write('\n');
+            in.flush();
+        }
+
+        /**
+         * Waits for the menu prompt and fails unless the marker was
+         * printed on the way.
+         */
+        private void expectMenu(String marker) throws IOException {
+            if (!marker.equals(read(MENU_PROMPT, marker))) {
+                throw new IOException("Session " + id + " did not report '" + marker + "'");
+            }
+        }
+
+        /**
+         * Reads output until the prompt appears and returns the last
+         * {@code TAIL_CHARS} characters, which include any listing
+         * printed just before the prompt.
+         */
+        private String expect(String prompt) throws IOException {
+            return read(prompt, null);
+        }
+
+        /**
+         * Reads output until the prompt appears.  Operations such as
+         * tabulate can print megabytes, so only a bounded tail is kept.
+         * If a marker is given, returns the marker when it was seen and
+         * null otherwise; without a marker returns the tail.
+         */
+        private String read(String prompt, String marker) throws IOException {
+            StringBuilder text = new StringBuilder();
+            boolean seen = false;
+            char[] buf = new char[8192];
+            while (true) {
+                int n = out.read(buf);
+                if (n < 0) {
+                    throw new IOException("Session " + id + " ended while waiting for '" + prompt + "':\n"
+                            + text);
+                }
+                int before = text.length();
+                text.append(buf, 0, n);
+                if (marker != null && !seen) {
+                    seen = text.indexOf(marker, Math.max(0, before - marker.length())) >= 0;
+                }
+                if (text.indexOf(prompt, Math.max(0, before - prompt.length())) >= 0) {
+                    if (marker != null) {
+                        return seen ? marker : null;
+                    }
+                    return text.toString();
+                }
+                if (text.length() > 2 * TAIL_CHARS) {
+                    text.delete(0, text.length() - TAIL_CHARS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the menu number listed next to the given file name.
+     */
+    private static String fileIndex(String listing, String fileName) throws IOException {
+        for (String line : listing.split("\\R")) {
+            if (line.endsWith(") " + fileName)) {
+                return line.substring(0, line.indexOf(')')).trim();
+            }
+        }
+        throw new IOException("File " + fileName + " not offered in:\n" + listing);
+    }
+
+    /**
+     * Returns the nearest-rank percentile of sorted values.
+     */
+    static long percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /**
+     * Prints one round, compared with the previous run of the same
+     * configuration, and appends it to the results file.
+     */
+    void report(int responses, int questions, Map<String, List<Long>> latencies, File resultsFile)
+            throws IOException {
+        List<String> history = resultsFile.exists()
+                ? Files.readAllLines(resultsFile.toPath()) : Collections.emptyList();
+        boolean header = history.isEmpty();
+        String timestamp = Instant.now().toString();
+        System.out.printf("%nResponses: %d, sessions: %d%n", responses, sessions);
+        System.out.printf("%-9s %6s %9s %9s %9s %9s %12s%n",
+                "operation", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "vs previous");
+        try (PrintWriter csv = new PrintWriter(new FileWriter(resultsFile, true))) {
+            if (header) {
+                csv.println(CSV_HEADER);
+            }
+            for (Map.Entry<String, List<Long>> e : latencies.entrySet()) {
+                List<Long> sorted = new ArrayList<>(e.getValue());
+                Collections.sort(sorted);
+                double p50 = percentile(sorted, 0.50) / 1e6;
+                double p90 = percentile(sorted, 0.90) / 1e6;
+                double p99 = percentile(sorted, 0.99) / 1e6;
+                double max = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1) / 1e6;
+                String key = "," + responses + "," + sessions + "," + questions + "," + e.getKey() + ",";
+                String trend = "";
+                for (int i = history.size() - 1; i >= 0; i--) {
+                    String row = history.get(i);
+                    if (row.contains(key)) {
+                        String[] cols = row.split(",");
+                        double prevP50 = Double.parseDouble(cols[6]);
+                        double prevP99 = Double.parseDouble(cols[8]);
+                        trend = String.format("p50 %+.0f%% p99 %+.0f%%",
+                                change(prevP50, p50), change(prevP99, p99));
+                        break;
+                    }
+                }
+                System.out.printf("%-9s %6d %9.1f %9.1f %9.1f %9.1f %s%n",
+                        e.getKey(), sorted.size(), p50, p90, p99, max, trend);
+                csv.printf(Locale.ROOT, "%s,%d,%d,%d,%s,%d,%.3f,%.3f,%.3f,%.3f%n",
+                        timestamp, responses, sessions, questions, e.getKey(), sorted.size(),
+                        p50, p90, p99, max);
+            }
+        }
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length % 2 != 1) {
+            System.out.println("Usage: java LoadHarness <data dir> [--sessions N] [--iterations N]"
+                    + " [--responses N,N,...] [--questions N] [--results FILE]");
+            return;
+        }
+        int sessions = 4;
+        int iterations = 5;
+        int questions = 10;
+        int[] steps = {100, 1000, 10000};
+        File results = new File("load-results.csv");
+        for (int i = 1; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sessions":
+                    sessions = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--questions":
+                    questions = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--responses":
+                    steps = Arrays.stream(args[i + 1].split(",")).mapToInt(s -> Integer.parseInt(s.trim()))
+                            .sorted().toArray();
+                    break;
+                case "--results":
+                    results = new File(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        LoadHarness harness = new LoadHarness(new File(args[0]), sessions, iterations, questions);
+        for (int target : steps) {
+            harness.growResponses(target);
+            harness.report(target, questions, harness.runRound(), results);
+        }
+        System.out.println();
+        System.out.println("Results appended to " + results.getPath());
+    }
+}
\ No newline at end of file
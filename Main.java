@@ -1,9 +1,9 @@
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -24,6 +24,9 @@ public class Main {
     private static Test currentTest = null;
 
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runCommand(args));
+        }
         // ensure directories exist
         new File(SURVEY_DIR).mkdirs();
         new File(SURVEY_RESPONSE_DIR).mkdirs();
@@ -53,6 +56,382 @@ public class Main {
         }
     }
 
+    /**
+     * Runs a single non-interactive command and returns the process exit
+     * status.  Only the survey or test named on the command line and its
+     * responses are loaded.  Supported commands:
+     * <pre>
+     *   tabulate --survey NAME | --test NAME [--out FILE]
+     *   grade --test NAME --all | --respondent ID
+     *   regrade --test NAME
+     *   analyze --test NAME [--out FILE]
+     *   stats --test NAME [--merge FILE,FILE...] [--save FILE]
+     *   rank --test NAME --respondent ID
+     *   top --test NAME [--count N]
+     *   show --survey NAME | --test NAME --respondent ID
+     *   reindex --survey NAME | --test NAME
+     *   export --survey NAME | --test NAME --out DIR
+     *   ingest --survey NAME | --test NAME --file ANSWERS
+     * </pre>
+     * {@code grade --all}, {@code regrade} and {@code analyze} use the test's
+     * {@link GradeMatrix}, so after an answer key changes only the changed
+     * questions are regraded.  {@code rank} and {@code top} read the
+     * test's {@link Leaderboard}.
+     *
+     * @param args command line arguments
+     * @return 0 on success, 1 on failure, 2 on a usage error
+     */
+    static int runCommand(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                return usage("Unexpected argument: " + args[i]);
+            }
+            String key = args[i].substring(2);
+            if (key.equals("all")) {
+                opts.put(key, "true");
+            } else if (i + 1 < args.length) {
+                opts.put(key, args[++i]);
+            } else {
+                return usage("Missing value for --" + key);
+            }
+        }
+        String surveyName = opts.get("survey");
+        String testName = opts.get("test");
+        if ((surveyName == null) == (testName == null)) {
+            return usage("Specify exactly one of --survey or --test.");
+        }
+        Survey survey = null;
+        Test test = null;
+        if (surveyName != null) {
+            survey = Survey.findByName(SURVEY_DIR, surveyName);
+            if (survey == null) {
+                System.out.println("Survey '" + surveyName + "' not found.");
+                return 1;
+            }
+        } else {
+            test = Test.findByName(TEST_DIR, testName);
+            if (test == null) {
+                System.out.println("Test '" + testName + "' not found.");
+                return 1;
+            }
+        }
+        switch (args[0]) {
+            case "tabulate":
+                if (opts.get("out") == null) {
+                    if (survey != null) {
+                        tabulateSurvey(survey);
+                    } else {
+                        tabulateTest(test);
+                    }
+                    return 0;
+                }
+                try (PrintWriter out = Sinks.toFile(new File(opts.get("out")))) {
+                    if (survey != null) {
+                        survey.tabulate(surveyColumns(survey), out);
+                    } else {
+                        test.tabulate(testColumns(test), out);
+                    }
+                    return out.checkError() ? 1 : 0;
+                } catch (IOException e) {
+                    System.out.println("Error writing tabulation: " + e.getMessage());
+                    return 1;
+                }
+            case "grade":
+                if (test == null || opts.containsKey("all") == opts.containsKey("respondent")) {
+                    return usage("grade requires --test NAME and one of --all or --respondent ID");
+                }
+                if (opts.containsKey("respondent")) {
+                    ResponseSet rs = findRespondent(test.getName(), TEST_RESPONSE_DIR, opts.get("respondent"));
+                    if (rs == null) {
+                        return 1;
+                    }
+                    printGrade(test, rs);
+                    return 0;
+                }
+                GradeMatrix matrix;
+                try {
+                    matrix = GradeMatrix.open(test, new File(TEST_RESPONSE_DIR));
+                } catch (IOException e) {
+                    System.out.println("Error grading responses: " + e.getMessage());
+                    return 1;
+                }
+                if (matrix.getRowCount() == 0) {
+                    System.out.println("No responses found for test '" + test.getName() + "'.");
+                    return 0;
+                }
+                for (int i = 0; i < matrix.getRowCount(); i++) {
+                    System.out.print(responseLabel(test.getName(), i, matrix.getRespondentId(i)) + ": ");
+                    printGrade(test, matrix.getScore(i));
+                }
+                return 0;
+            case "regrade":
+                if (test == null) {
+                    return usage("regrade requires --test NAME");
+                }
+                return regrade(test);
+            case "stats": {
+                if (test == null) {
+                    return usage("stats requires --test NAME");
+                }
+                GradeStats stats;
+                if (opts.get("merge") != null) {
+                    List<GradeStats> parts = new ArrayList<>();
+                    for (String path : opts.get("merge").split(",")) {
+                        try {
+                            parts.add(GradeStats.loadFromFile(path.trim()));
+                        } catch (IOException | ClassNotFoundException e) {
+                            System.out.println("Failed to load statistics from " + path.trim() + ": " + e.getMessage());
+                            return 1;
+                        }
+                    }
+                    try {
+                        stats = GradeStats.mergeAll(test.getName(), parts);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                        return 1;
+                    }
+                } else {
+                    stats = GradeStats.collect(test, new File(TEST_RESPONSE_DIR));
+                }
+                PrintWriter out = Sinks.console();
+                stats.print(out);
+                out.flush();
+                if (opts.get("save") != null) {
+                    try {
+                        stats.saveToFile(opts.get("save"));
+                        System.out.println("Statistics saved to " + opts.get("save"));
+                    } catch (IOException e) {
+                        System.out.println("Error saving statistics: " + e.getMessage());
+                        return 1;
+                    }
+                }
+                return 0;
+            }
+            case "analyze": {
+                if (test == null) {
+                    return usage("analyze requires --test NAME");
+                }
+                ItemAnalysis analysis;
+                try {
+                    analysis = ItemAnalysis.analyze(test, GradeMatrix.open(test, new File(TEST_RESPONSE_DIR)));
+                } catch (IOException e) {
+                    System.out.println("Error grading responses: " + e.getMessage());
+                    return 1;
+                }
+                if (opts.get("out") == null) {
+                    PrintWriter out = Sinks.console();
+                    analysis.print(out);
+                    out.flush();
+                    return 0;
+                }
+                try (PrintWriter out = Sinks.toFile(new File(opts.get("out")))) {
+                    analysis.print(out);
+                    return out.checkError() ? 1 : 0;
+                } catch (IOException e) {
+                    System.out.println("Error writing item analysis: " + e.getMessage());
+                    return 1;
+                }
+            }
+            case "rank":
+            case "top": {
+                if (test == null || (args[0].equals("rank") && opts.get("respondent") == null)) {
+                    return usage(args[0].equals("rank") ? "rank requires --test NAME and --respondent ID"
+                            : "top requires --test NAME");
+                }
+                int count = 100;
+                if (opts.get("count") != null) {
+                    try {
+                        count = Integer.parseInt(opts.get("count"));
+                    } catch (NumberFormatException e) {
+                        return usage("--count must be a number");
+                    }
+                }
+                Leaderboard board;
+                try {
+                    board = Leaderboard.open(new File(TEST_RESPONSE_DIR), test);
+                } catch (IOException e) {
+                    System.out.println("Error reading leaderboard: " + e.getMessage());
+                    return 1;
+                }
+                if (args[0].equals("rank")) {
+                    String respondent = opts.get("respondent");
+                    int rank = board.rankOf(respondent);
+                    if (rank == 0) {
+                        System.out.println("No graded response found for respondent '" + respondent + "'.");
+                        return 1;
+                    }
+                    System.out.println("Rank " + rank + " of " + board.size() + ": "
+                            + scoreLabel(test, board.getScore(respondent)));
+                    return 0;
+                }
+                if (board.size() == 0) {
+                    System.out.println("No responses found for test '" + test.getName() + "'.");
+                    return 0;
+                }
+                for (Leaderboard.Entry entry : board.top(count)) {
+                    System.out.println(entry.getRank() + ". " + entry.getRespondent() + ": "
+                            + scoreLabel(test, entry.getScore()));
+                }
+                return 0;
+            }
+            case "show": {
+                if (opts.get("respondent") == null) {
+                    return usage("show requires --respondent ID");
+                }
+                String name = survey != null ? survey.getName() : test.getName();
+                ResponseSet rs = findRespondent(name, survey != null ? SURVEY_RESPONSE_DIR : TEST_RESPONSE_DIR,
+                        opts.get("respondent"));
+                if (rs == null) {
+                    return 1;
+                }
+                List<Question> questions = survey != null ? survey.getQuestions() : questionsOf(test);
+                printResponses(questions, rs);
+                return 0;
+            }
+            case "reindex":
+                try {
+                    String name = survey != null ? survey.getName() : test.getName();
+                    int indexed = ResponseIndex.rebuild(
+                            new File(survey != null ? SURVEY_RESPONSE_DIR : TEST_RESPONSE_DIR), name);
+                    System.out.println("Indexed " + indexed + " response sets for '" + name + "'.");
+                    return 0;
+                } catch (IOException e) {
+                    System.out.println("Error rebuilding index: " + e.getMessage());
+                    return 1;
+                }
+            case "export":
+                if (opts.get("out") == null) {
+                    return usage("export requires --out DIR");
+                }
+                return exportResponses(survey, test, new File(opts.get("out")));
+            case "ingest":
+                if (opts.get("file") == null) {
+                    return usage("ingest requires --file ANSWERS");
+                }
+                try {
+                    BulkIngest.Report report = survey != null
+                            ? BulkIngest.ingest(survey, new File(opts.get("file")), SURVEY_RESPONSE_DIR)
+                            : BulkIngest.ingest(test, new File(opts.get("file")), TEST_RESPONSE_DIR);
+                    System.out.println(report);
+                    return report.getRejected() == 0 ? 0 : 1;
+                } catch (IOException e) {
+                    System.out.println("Error ingesting answers: " + e.getMessage());
+                    return 1;
+                }
+            default:
+                return usage("Unknown command: " + args[0]);
+        }
+    }
+
+    /**
+     * Looks up a respondent's latest response set through the response
+     * index, printing a message and returning null if there is none.
+     */
+    private static ResponseSet findRespondent(String name, String directory, String respondentId) {
+        try {
+            ResponseSet rs = ResponseSet.findByRespondent(directory, name, respondentId);
+            if (rs == null) {
+                System.out.println("No response found for respondent '" + respondentId + "'.");
+            }
+            return rs;
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Failed to load response: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns a one line description of a score, such as
+     * "95 (19 of 20 correct)".
+     */
+    private static String scoreLabel(Test test, int correct) {
+        long grade = test.size() == 0 ? 0 : Math.round(correct * 100.0 / test.size());
+        return grade + " (" + correct + " of " + test.size() + " correct)";
+    }
+
+    private static List<Question> questionsOf(Test test) {
+        List<Question> questions = new ArrayList<>();
+        for (TestQuestion tq : test.getQuestions()) {
+            questions.add(tq.getQuestion());
+        }
+        return questions;
+    }
+
+    /**
+     * Prints each question followed by the respondent's answers.
+     */
+    private static void printResponses(List<Question> questions, ResponseSet rs) {
+        PrintWriter out = Sinks.console();
+        out.println("Responses of " + rs.getRespondentId() + " to " + rs.getSurveyName());
+        for (int i = 0; i < questions.size(); i++) {
+            out.println();
+            out.print((i + 1) + ") ");
+            questions.get(i).display(out);
+            for (String answer : rs.answers(i)) {
+                out.println("> " + answer);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the label a response is listed under, including the
+     * respondent's ID when there is one.
+     */
+    private static String responseLabel(String name, int index, ResponseSet rs) {
+        return responseLabel(name, index, rs.getRespondentId());
+    }
+
+    private static String responseLabel(String name, int index, String respondentId) {
+        String label = name + " - Response " + (index + 1);
+        return respondentId == null ? label : label + " (" + respondentId + ")";
+    }
+
+    private static int usage(String problem) {
+        System.out.println(problem);
+        System.out.println("Usage: java Main [command]");
+        System.out.println("  tabulate --survey NAME | --test NAME [--out FILE]");
+        System.out.println("  grade --test NAME --all | --respondent ID");
+        System.out.println("  regrade --test NAME");
+        System.out.println("  analyze --test NAME [--out FILE]");
+        System.out.println("  stats --test NAME [--merge FILE,FILE...] [--save FILE]");
+        System.out.println("  rank --test NAME --respondent ID");
+        System.out.println("  top --test NAME [--count N]");
+        System.out.println("  show --survey NAME | --test NAME --respondent ID");
+        System.out.println("  reindex --survey NAME | --test NAME");
+        System.out.println("  export --survey NAME | --test NAME --out DIR");
+        System.out.println("  ingest --survey NAME | --test NAME --file ANSWERS");
+        System.out.println("Without a command the interactive menu is started.");
+        return 2;
+    }
+
+    /**
+     * Writes the responses of a survey or test to a columnar response
+     * store in the given directory.
+     */
+    private static int exportResponses(Survey survey, Test test, File outDir) {
+        List<Question> questions = new ArrayList<>();
+        List<ResponseSet> sets;
+        if (survey != null) {
+            questions = survey.getQuestions();
+            sets = loadResponseSets(survey.getName(), SURVEY_RESPONSE_DIR);
+        } else {
+            for (TestQuestion tq : test.getQuestions()) {
+                questions.add(tq.getQuestion());
+            }
+            sets = loadResponseSets(test.getName(), TEST_RESPONSE_DIR);
+        }
+        try {
+            ColumnarResponseStore.write(questions, sets, outDir);
+            System.out.println("Exported " + sets.size() + " response sets to " + outDir.getPath());
+            return 0;
+        } catch (IOException e) {
+            System.out.println("Error exporting responses: " + e.getMessage());
+            return 1;
+        }
+    }
+
     /**
      * Prompts the user for a survey name and then enters a loop allowing
      * the addition of questions.  When finished the newly created survey
@@ -365,14 +744,17 @@ public class Main {
         }
         
         // Take the survey using the same pattern as taking a test
-        ResponseSet responses = surveyToTake.takeSurvey(scanner);
+        System.out.print("Enter your respondent ID (or press Enter to stay anonymous): ");
+        String respondentId = scanner.nextLine().trim();
+        ResponseSet responses = surveyToTake.takeSurvey(scanner, respondentId.isEmpty() ? null : respondentId);
         
         // Save responses to survey responses directory
-        String respFileName = responses.generateFileName();
-        File file = new File(SURVEY_RESPONSE_DIR, respFileName);
         try {
-            responses.saveToFile(file.getPath());
+            File file = responses.saveToUniqueFile(SURVEY_RESPONSE_DIR);
             System.out.println("Responses saved to " + file.getPath());
+            if (responses.getDuplicateOf() != null) {
+                System.out.println("Note: these responses duplicate " + responses.getDuplicateOf() + ".");
+            }
         } catch (IOException e) {
             System.out.println("Error saving responses: " + e.getMessage());
         }
@@ -565,7 +947,9 @@ public class Main {
             String ans = scanner.nextLine();
             correct.add(ans);
         }
-        return new TestQuestion(sa, correct);
+        TestQuestion tq = new TestQuestion(sa, correct);
+        tq.setMaxEdits(TestQuestion.promptMaxEdits(scanner));
+        return tq;
     }
 
     /**
@@ -753,7 +1137,9 @@ public class Main {
     }
 
     /**
-     * Saves the current test to a file in the tests directory.
+     * Saves the current test to a file in the tests directory.  Saved
+     * grades are then brought up to date, so a changed answer key only
+     * affects grades once it has been saved.
      */
     private static void saveTest() {
         if (currentTest == null) {
@@ -773,6 +1159,10 @@ public class Main {
             System.out.println("Test saved to " + file.getPath());
         } catch (IOException e) {
             System.out.println("Error saving test: " + e.getMessage());
+            return;
+        }
+        if (GradeMatrix.exists(new File(TEST_RESPONSE_DIR), currentTest.getName())) {
+            regrade(currentTest);
         }
     }
 
@@ -819,14 +1209,22 @@ public class Main {
         }
         
         // Take the test using the same pattern as taking a survey
-        ResponseSet responses = testToTake.takeTest(scanner);
+        System.out.print("Enter your respondent ID (or press Enter to stay anonymous): ");
+        String respondentId = scanner.nextLine().trim();
+        ResponseSet responses = testToTake.takeTest(scanner, respondentId.isEmpty() ? null : respondentId);
         
         // Save responses to test responses directory
-        String respFileName = responses.generateFileName();
-        File file = new File(TEST_RESPONSE_DIR, respFileName);
         try {
-            responses.saveToFile(file.getPath());
+            File file = responses.saveToUniqueFile(TEST_RESPONSE_DIR);
             System.out.println("Responses saved to " + file.getPath());
+            if (responses.getDuplicateOf() != null) {
+                System.out.println("Note: these responses duplicate " + responses.getDuplicateOf() + ".");
+            }
+            try {
+                Leaderboard.record(new File(TEST_RESPONSE_DIR), testToTake, responses, file.getName());
+            } catch (IOException e) {
+                System.out.println("Error updating leaderboard: " + e.getMessage());
+            }
         } catch (IOException e) {
             System.out.println("Error saving responses: " + e.getMessage());
         }
@@ -844,10 +1242,45 @@ public class Main {
         currentTest.modifyTest(scanner);
     }
 
+    /**
+     * Brings the saved grades of a test up to date with its correct
+     * answers and reports what had to be regraded.
+     */
+    private static int regrade(Test test) {
+        long start = System.nanoTime();
+        GradeMatrix matrix;
+        try {
+            matrix = GradeMatrix.open(test, new File(TEST_RESPONSE_DIR));
+        } catch (IOException e) {
+            System.out.println("Error regrading responses: " + e.getMessage());
+            return 1;
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        List<Integer> regraded = matrix.getRegradedQuestions();
+        if (matrix.wasRebuilt()) {
+            System.out.println("Graded " + matrix.getRowCount() + " responses in " + millis + " ms.");
+            return 0;
+        }
+        if (matrix.getAppendedRowCount() > 0) {
+            System.out.println("Graded " + matrix.getAppendedRowCount() + " new responses.");
+        }
+        if (regraded.isEmpty()) {
+            System.out.println("Grades of " + matrix.getRowCount() + " responses are up to date.");
+        } else {
+            StringBuilder sb = new StringBuilder();
+            for (int q : regraded) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(q + 1);
+            }
+            System.out.println("Regraded question" + (regraded.size() == 1 ? " " : "s ") + sb + " for "
+                    + matrix.getRowCount() + " responses in " + millis + " ms.");
+        }
+        return 0;
+    }
+
     /**
      * Tabulates the responses for the current survey.  Prompts the user
-     * to select which survey to tabulate, loads all response sets for
-     * that survey and prints a summary of answers by question.
+     * to select which survey to tabulate and prints a summary of its
+     * answers by question.
      */
     private static void tabulateSurvey() {
         // Ensure there is at least one survey loaded to know what to tabulate
@@ -855,147 +1288,73 @@ public class Main {
             System.out.println("You must have a survey loaded in order to tabulate it.");
             return;
         }
-        // Gather all response sets for this survey
-        List<ResponseSet> sets = loadResponseSets(currentSurvey.getName(), SURVEY_RESPONSE_DIR);
-        if (sets.isEmpty()) {
-            System.out.println("No responses found for survey '" + currentSurvey.getName() + "'.");
-            return;
-        }
-        // Tabulate each question
-        System.out.println("Tabulation of survey: " + currentSurvey.getName());
-        List<Question> qs = currentSurvey.getQuestions();
-        for (int i = 0; i < qs.size(); i++) {
-            Question q = qs.get(i);
-            System.out.println();
-            System.out.print((i + 1) + ") ");
-            q.display();
-            // Collect responses for this question
-            List<List<String>> ansForThis = new ArrayList<>();
-            for (ResponseSet rs : sets) {
-                List<List<String>> ansList = rs.getResponses();
-                if (i < ansList.size()) {
-                    ansForThis.add(ansList.get(i));
-                }
-            }
-            // Summarize
-            if (q instanceof TrueFalse || q instanceof MultipleChoice) {
-                Map<String, Integer> counts = new HashMap<>();
-                List<String> options = new ArrayList<>();
-                if (q instanceof TrueFalse) {
-                    options.add("True");
-                    options.add("False");
-                } else {
-                    MultipleChoice mc = (MultipleChoice) q;
-                    int n = mc.getChoices().size();
-                    for (int j = 0; j < n; j++) {
-                        char letter = (char) ('A' + j);
-                        options.add(String.valueOf(letter));
-                    }
-                }
-                for (String opt : options) {
-                    counts.put(opt, 0);
-                }
-                for (List<String> resp : ansForThis) {
-                    for (String ans : resp) {
-                        String normalized;
-                        if (q instanceof TrueFalse) {
-                            String lower = ans.trim().toLowerCase(Locale.ROOT);
-                            if (lower.startsWith("t")) {
-                                normalized = "True";
-                            } else if (lower.startsWith("f")) {
-                                normalized = "False";
-                            } else {
-                                continue;
-                            }
-                        } else {
-                            normalized = ans.trim().toUpperCase(Locale.ROOT);
-                        }
-                        counts.put(normalized, counts.getOrDefault(normalized, 0) + 1);
-                    }
-                }
-                if (q instanceof TrueFalse) {
-                    System.out.println("True: " + counts.get("True"));
-                    System.out.println("False: " + counts.get("False"));
-                } else {
-                    for (String opt : options) {
-                        System.out.println(opt + ": " + counts.get(opt));
-                    }
-                }
-            } else if (q instanceof ShortAnswer || q instanceof DateQuestion) {
-                Map<String, Integer> counts = new HashMap<>();
-                for (List<String> resp : ansForThis) {
-                    for (String ans : resp) {
-                        String key = ans.trim();
-                        counts.put(key, counts.getOrDefault(key, 0) + 1);
-                    }
-                }
-                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
-                    System.out.println(entry.getKey() + " " + entry.getValue());
-                }
-            } else if (q instanceof Essay) {
-                for (List<String> resp : ansForThis) {
-                    for (String ans : resp) {
-                        System.out.println(ans);
-                    }
-                }
-            } else if (q instanceof Matching) {
-                Map<String, Integer> comboCounts = new HashMap<>();
-                for (List<String> resp : ansForThis) {
-                    List<String> pairs = new ArrayList<>();
-                    for (String ans : resp) {
-                        pairs.add(ans.trim().toUpperCase(Locale.ROOT));
-                    }
-                    pairs.sort((a, b) -> {
-                        String la = a.split("-")[0];
-                        String lb = b.split("-")[0];
-                        return la.compareTo(lb);
-                    });
-                    String key = String.join("|", pairs);
-                    comboCounts.put(key, comboCounts.getOrDefault(key, 0) + 1);
-                }
-                Matching m = (Matching) q;
-                // display items
-                List<String> left = m.getLeftItems();
-                List<String> right = m.getRightItems();
-                System.out.println();
-                for (int j = 0; j < left.size(); j++) {
-                    char letter = (char) ('A' + j);
-                    int num = j + 1;
-                    System.out.printf("%c) %s %d) %s%n", letter, left.get(j), num, right.get(j));
-                }
-                for (Map.Entry<String, Integer> entry : comboCounts.entrySet()) {
-                    int count = entry.getValue();
-                    System.out.println(count);
-                    String[] pairs = entry.getKey().split("\\|");
-                    for (String p : pairs) {
-                        String[] parts = p.split("-");
-                        if (parts.length == 2) {
-                            System.out.println(parts[0] + " " + parts[1]);
-                        } else {
-                            System.out.println(p);
-                        }
-                    }
-                }
+        tabulateSurvey(currentSurvey);
+    }
+
+    /**
+     * Prints a summary of the given survey's answers by question, read
+     * from the columnar copy of its responses.
+     *
+     * @param survey the survey to tabulate
+     */
+    private static void tabulateSurvey(Survey survey) {
+        PrintWriter out = Sinks.console();
+        try {
+            ColumnarResponseStore store = surveyColumns(survey);
+            if (store.getRowCount() == 0) {
+                System.out.println("No responses found for survey '" + survey.getName() + "'.");
+                return;
             }
+            survey.tabulate(store, out);
+        } catch (IOException e) {
+            out.println("Error tabulating responses: " + e.getMessage());
+        } finally {
+            out.flush();
         }
     }
 
     /**
-     * Tabulates responses for the current test.  Loads all response sets
-     * associated with the current test and summarises responses by
-     * question.
+     * Tabulates responses for the current test, summarising them by
+     * question from the columnar copy of its responses.
      */
     private static void tabulateTest() {
         if (currentTest == null) {
             System.out.println("You must have a test loaded in order to tabulate it.");
             return;
         }
-        List<ResponseSet> sets = loadResponseSets(currentTest.getName(), TEST_RESPONSE_DIR);
-        if (sets.isEmpty()) {
-            System.out.println("No responses found for test '" + currentTest.getName() + "'.");
-            return;
+        tabulateTest(currentTest);
+    }
+
+    private static void tabulateTest(Test test) {
+        PrintWriter out = Sinks.console();
+        try {
+            ColumnarResponseStore store = testColumns(test);
+            if (store.getRowCount() == 0) {
+                System.out.println("No responses found for test '" + test.getName() + "'.");
+                return;
+            }
+            test.tabulate(store, out);
+        } catch (IOException e) {
+            out.println("Error tabulating responses: " + e.getMessage());
+        } finally {
+            out.flush();
         }
-        currentTest.tabulate(sets);
+    }
+
+    /**
+     * Returns the columnar copy of a survey's responses, after appending
+     * the response files saved since it was last brought up to date.
+     */
+    private static ColumnarResponseStore surveyColumns(Survey survey) throws IOException {
+        return ColumnarResponseStore.sync(survey.getQuestions(), new File(SURVEY_RESPONSE_DIR), survey.getName());
+    }
+
+    /**
+     * Returns the columnar copy of a test's responses, after appending
+     * the response files saved since it was last brought up to date.
+     */
+    private static ColumnarResponseStore testColumns(Test test) throws IOException {
+        return ColumnarResponseStore.sync(questionsOf(test), new File(TEST_RESPONSE_DIR), test.getName());
     }
 
     /**
@@ -1052,6 +1411,15 @@ public class Main {
             System.out.println("Failed to load test: " + e.getMessage());
             return;
         }
+        System.out.print("Enter a respondent ID to grade, or press Enter to choose from all responses: ");
+        String respondentId = scanner.nextLine().trim();
+        if (!respondentId.isEmpty()) {
+            ResponseSet rs = findRespondent(test.getName(), TEST_RESPONSE_DIR, respondentId);
+            if (rs != null) {
+                printGrade(test, rs);
+            }
+            return;
+        }
         // Find all response sets for this test
         List<ResponseSet> responses = loadResponseSets(test.getName(), TEST_RESPONSE_DIR);
         if (responses.isEmpty()) {
@@ -1061,7 +1429,7 @@ public class Main {
         // Display list of responses
         System.out.println("Select an existing response set:");
         for (int i = 0; i < responses.size(); i++) {
-            System.out.println((i + 1) + ") " + test.getName() + " - Response " + (i + 1));
+            System.out.println((i + 1) + ") " + responseLabel(test.getName(), i, responses.get(i)));
         }
         int respSelection = -1;
         while (true) {
@@ -1082,7 +1450,22 @@ public class Main {
                 System.out.println("Please enter a valid integer.");
             }
         }
-        ResponseSet chosenRs = responses.get(respSelection - 1);
+        printGrade(test, responses.get(respSelection - 1));
+    }
+
+    /**
+     * Grades one response set and prints the score.  Each question carries
+     * equal weight; essay questions cannot be auto graded.
+     */
+    private static void printGrade(Test test, ResponseSet chosenRs) {
+        printGrade(test, test.countCorrect(chosenRs));
+    }
+
+    /**
+     * Prints the score for the given number of correctly answered
+     * questions.
+     */
+    private static void printGrade(Test test, int correct) {
         int totalQuestions = test.size();
         int essayCount = 0;
         for (TestQuestion tq : test.getQuestions()) {
@@ -1090,7 +1473,6 @@ public class Main {
                 essayCount++;
             }
         }
-        int correct = test.countCorrect(chosenRs);
         // Compute grade: each question worth equal weight
         double pointsPerQuestion = 100.0 / totalQuestions;
         double grade = correct * pointsPerQuestion;
@@ -1118,30 +1500,50 @@ public class Main {
      * @param directory path to the responses directory
      * @return list of ResponseSet objects
      */
-    private static List<ResponseSet> loadResponseSets(String surveyOrTestName, String directory) {
+    static List<ResponseSet> loadResponseSets(String surveyOrTestName, String directory) {
         List<ResponseSet> sets = new ArrayList<>();
         File dir = new File(directory);
         File[] files = dir.listFiles();
         if (files == null) {
             return sets;
         }
+        long start = System.nanoTime();
+        SurveyEvents.LoadResponseSets event = new SurveyEvents.LoadResponseSets();
+        event.begin();
+        boolean recording = event.isEnabled();
+        long bytes = 0;
+        int failures = 0;
         // compute safe name prefix
         String safeName = surveyOrTestName.replaceAll("[^a-zA-Z0-9_-]", "_");
         for (File f : files) {
+            Metrics.FILES_SCANNED.increment();
             if (!f.isFile()) {
                 continue;
             }
             String fname = f.getName();
-            if (!fname.startsWith(safeName + "_")) {
+            if (!fname.startsWith(safeName + "_") || !fname.endsWith(".resp")) {
                 continue;
             }
             try {
                 ResponseSet rs = ResponseSet.loadFromFile(f.getPath());
                 sets.add(rs);
+                if (recording) {
+                    bytes += f.length();
+                }
             } catch (IOException | ClassNotFoundException e) {
-                // Skip files that cannot be parsed
+                // Skip files that cannot be parsed, but count them
+                Metrics.PARSE_FAILURES.increment();
+                failures++;
             }
         }
+        Metrics.LOAD_RESPONSE_SETS.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(surveyOrTestName, sets.isEmpty() ? 0 : sets.get(0).questionCount(), sets.size(), bytes);
+            event.directory = directory;
+            event.filesScanned = files.length;
+            event.parseFailures = failures;
+            event.commit();
+        }
         return sets;
     }
 
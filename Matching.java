@@ -45,21 +45,24 @@ public class Matching extends Question {
     }
 
     @Override
-    public void display() {
-        System.out.println(getPrompt());
-        System.out.println("Match the following items:");
+    protected void render(StringBuilder sb) {
+        sb.append(getPrompt()).append(NEWLINE);
+        sb.append("Match the following items:").append(NEWLINE);
         // Determine longest left item for formatting
         int maxLeftLength = 0;
         for (String s : leftItems) {
             if (s.length() > maxLeftLength) maxLeftLength = s.length();
         }
-        // Print left column and right column
+        // Left column padded to the longest item, then right column
         for (int i = 0; i < leftItems.size(); i++) {
             char letter = (char) ('A' + i);
             int number = i + 1;
             String left = leftItems.get(i);
-            String right = rightItems.get(i);
-            System.out.printf("%c) %-" + maxLeftLength + "s   %d) %s%n", letter, left, number, right);
+            sb.append(letter).append(") ").append(left);
+            for (int pad = left.length(); pad < maxLeftLength; pad++) {
+                sb.append(' ');
+            }
+            sb.append("   ").append(number).append(") ").append(rightItems.get(i)).append(NEWLINE);
         }
     }
 
@@ -67,47 +70,96 @@ public class Matching extends Question {
     public List<String> getUserAnswer(Scanner scanner) {
         List<String> answers = new ArrayList<>();
         int n = leftItems.size();
-        char maxLetter = (char) ('A' + n - 1);
         System.out.println("Please enter your matches. For each letter on the left, enter the number of the matching item on the right.");
         for (int i = 0; i < n; i++) {
             char letter = (char) ('A' + i);
             while (true) {
                 System.out.print(letter + " -> ");
                 String input = scanner.nextLine().trim();
-                try {
-                    int number = Integer.parseInt(input);
-                    if (number < 1 || number > n) {
-                        System.out.println("Please enter a number between 1 and " + n + ".");
-                        continue;
-                    }
-                    // ensure no duplicate numbers selected
-                    boolean duplicate = false;
-                    for (String a : answers) {
-                        String[] parts = a.split("-");
-                        if (parts.length == 2) {
-                            int used = Integer.parseInt(parts[1]);
-                            if (used == number) {
-                                duplicate = true;
-                                break;
-                            }
-                        }
-                    }
-                    if (duplicate) {
-                        System.out.println("That number has already been used. Please choose a different number.");
-                        continue;
-                    }
-                    answers.add(letter + "-" + number);
-                    break;
-                } catch (NumberFormatException e) {
-                    System.out.println("Please enter a valid integer.");
+                String error = matchError(input, answers);
+                if (error != null) {
+                    System.out.println(error);
+                    continue;
                 }
+                answers.add(letter + "-" + Integer.parseInt(input));
+                break;
             }
         }
         return answers;
     }
 
+    /**
+     * Checks the number entered for one left item against the valid range
+     * and the numbers already used.
+     *
+     * @param input the trimmed input
+     * @param answers matches accepted so far, in "A-2" form
+     * @return an error message, or null if the number is acceptable
+     */
+    private String matchError(String input, List<String> answers) {
+        int n = leftItems.size();
+        int number;
+        try {
+            number = Integer.parseInt(input);
+        } catch (NumberFormatException e) {
+            return "Please enter a valid integer.";
+        }
+        if (number < 1 || number > n) {
+            return "Please enter a number between 1 and " + n + ".";
+        }
+        // ensure no duplicate numbers selected
+        for (String a : answers) {
+            String[] parts = a.split("-");
+            if (parts.length == 2 && Integer.parseInt(parts[1]) == number) {
+                return "That number has already been used. Please choose a different number.";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Strips an optional "A-" style prefix so that answers may be given
+     * either as a bare number or in stored form.
+     */
+    private static String numberPart(String ans, int position) {
+        String trimmed = ans.trim();
+        String prefix = (char) ('A' + position) + "-";
+        if (trimmed.toUpperCase().startsWith(prefix)) {
+            return trimmed.substring(prefix.length()).trim();
+        }
+        return trimmed;
+    }
+
+    @Override
+    public List<ValidationError> validateAnswers(List<String> answers) {
+        List<ValidationError> errors = super.validateAnswers(answers);
+        if (answers != null) {
+            List<String> accepted = new ArrayList<>();
+            for (int k = 0; k < answers.size(); k++) {
+                String input = answers.get(k) == null ? "" : numberPart(answers.get(k), k);
+                String error = matchError(input, accepted);
+                if (error != null) {
+                    errors.add(new ValidationError(k, error));
+                } else {
+                    accepted.add((char) ('A' + k) + "-" + Integer.parseInt(input));
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public List<String> normalizeAnswers(List<String> answers) {
+        List<String> result = new ArrayList<>(answers.size());
+        for (int k = 0; k < answers.size(); k++) {
+            result.add((char) ('A' + k) + "-" + Integer.parseInt(numberPart(answers.get(k), k)));
+        }
+        return result;
+    }
+
     @Override
     public void modify(Scanner scanner) {
+        checkMutable();
         System.out.println("Current prompt: " + getPrompt());
         System.out.print("Do you wish to modify the prompt? (Y/N): ");
         String resp = scanner.nextLine().trim().toLowerCase();
@@ -0,0 +1,274 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process wide metrics updated by the hot paths: latency histograms for
+ * loading, saving, tabulating and grading, counters for the response
+ * directory scan, and hit rates for the in-memory caches.
+ * <p>
+ * Each metric is registered as a platform MBean under the {@code survey}
+ * domain, e.g. {@code survey:type=Histogram,name=loadResponseSets}, so
+ * it can be read with jconsole or any JMX client.  Updates only touch
+ * striped adders and never allocate; percentiles and rates are computed
+ * when an attribute is read.  Registration can be turned off with
+ * {@code -Dsurvey.metrics.jmx=false}.
+ */
+public final class Metrics {
+    private static final boolean JMX = !"false".equals(System.getProperty("survey.metrics.jmx"));
+
+    public static final Histogram SURVEY_LOAD = register("surveyLoad", new Histogram());
+    public static final Histogram TEST_LOAD = register("testLoad", new Histogram());
+    public static final Histogram RESPONSE_LOAD = register("responseLoad", new Histogram());
+    public static final Histogram RESPONSE_SAVE = register("responseSave", new Histogram());
+    public static final Histogram LOAD_RESPONSE_SETS = register("loadResponseSets", new Histogram());
+    public static final Histogram TABULATE = register("tabulate", new Histogram());
+    public static final Histogram GRADE = register("grade", new Histogram());
+
+    public static final Counter FILES_SCANNED = register("filesScanned", new Counter());
+    public static final Counter BYTES_READ = register("bytesRead", new Counter());
+    public static final Counter PARSE_FAILURES = register("parseFailures", new Counter());
+    public static final Counter DUPLICATES = register("duplicateSubmissions", new Counter());
+    public static final Counter FILTER_FALSE_POSITIVES = register("filterFalsePositives", new Counter());
+
+    public static final HitRate RENDER_CACHE = register("renderCache", new HitRate());
+    public static final HitRate ANSWER_POOL = register("answerPool", new HitRate());
+
+    private Metrics() {
+    }
+
+    private static <T> T register(String name, T metric) {
+        if (JMX) {
+            String type = metric.getClass().getSimpleName();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metric,
+                        new ObjectName("survey:type=" + type + ",name=" + name));
+            } catch (JMException e) {
+                // Already registered by another class loader; the metric
+                // still works, it is just not visible over JMX
+            }
+        }
+        return metric;
+    }
+
+    /** JMX view of a {@link Histogram}. */
+    public interface HistogramMBean {
+        long getCount();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP90Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+
+        void reset();
+    }
+
+    /**
+     * Latency histogram with log-linear buckets: every power of two is
+     * split into eight buckets, so reported percentiles are within about
+     * 12% of the true value.
+     */
+    public static final class Histogram implements HistogramMBean {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Records the time elapsed since the given {@link System#nanoTime}
+         * reading.
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.incrementAndGet(bucket(nanos));
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + (exp - SUB_BITS) * SUB_BUCKETS + sub;
+        }
+
+        /** Returns the midpoint of the values that fall into a bucket. */
+        static long bucketMidpoint(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exp = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+            int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+            long width = 1L << (exp - SUB_BITS);
+            return ((long) (SUB_BUCKETS + sub) << (exp - SUB_BITS)) + width / 2;
+        }
+
+        @Override
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long count = getCount();
+            return count == 0 ? 0 : sum.sum() / 1e6 / count;
+        }
+
+        /**
+         * Returns the estimated value at the given quantile in nanoseconds.
+         *
+         * @param q quantile between 0 and 1
+         */
+        public long quantile(double q) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketMidpoint(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return quantile(0.50) / 1e6;
+        }
+
+        @Override
+        public double getP90Millis() {
+            return quantile(0.90) / 1e6;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return quantile(0.99) / 1e6;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return max.get() / 1e6;
+        }
+
+        @Override
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    /** JMX view of a {@link Counter}. */
+    public interface CounterMBean {
+        long getValue();
+
+        void reset();
+    }
+
+    /** Monotonic event counter. */
+    public static final class Counter implements CounterMBean {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long n) {
+            value.add(n);
+        }
+
+        @Override
+        public long getValue() {
+            return value.sum();
+        }
+
+        @Override
+        public void reset() {
+            value.reset();
+        }
+    }
+
+    /** JMX view of a {@link HitRate}. */
+    public interface HitRateMBean {
+        long getHits();
+
+        long getMisses();
+
+        double getHitRate();
+
+        void reset();
+    }
+
+    /** Hit and miss counts of a cache. */
+    public static final class HitRate implements HitRateMBean {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public void hit() {
+            hits.increment();
+        }
+
+        public void miss() {
+            misses.increment();
+        }
+
+        @Override
+        public long getHits() {
+            return hits.sum();
+        }
+
+        @Override
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        @Override
+        public double getHitRate() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        @Override
+        public void reset() {
+            hits.reset();
+            misses.reset();
+        }
+    }
+}
\ No newline at end of file
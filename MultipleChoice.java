@@ -30,11 +30,11 @@ public class MultipleChoice extends Question {
     }
 
     @Override
-    public void display() {
-        System.out.println(getPrompt());
+    protected void render(StringBuilder sb) {
+        sb.append(getPrompt()).append(NEWLINE);
         char letter = 'A';
         for (String choice : choices) {
-            System.out.printf("%c) %s%n", letter, choice);
+            sb.append(letter).append(") ").append(choice).append(NEWLINE);
             letter++;
         }
     }
@@ -42,9 +42,6 @@ public class MultipleChoice extends Question {
     @Override
     public List<String> getUserAnswer(Scanner scanner) {
         List<String> answers = new ArrayList<>();
-        // Determine the valid letter range
-        int nChoices = choices.size();
-        char maxLetter = (char) ('A' + nChoices - 1);
         if (getNumResponsesAllowed() > 1) {
             System.out.printf("Please select %d distinct choices (e.g. A B C):%n", getNumResponsesAllowed());
         } else {
@@ -53,27 +50,71 @@ public class MultipleChoice extends Question {
         while (answers.size() < getNumResponsesAllowed()) {
             System.out.print("Choice " + (answers.size() + 1) + ": ");
             String input = scanner.nextLine().trim().toUpperCase();
-            if (input.length() != 1) {
-                System.out.println("Please enter a single letter corresponding to a choice.");
-                continue;
-            }
-            char letter = input.charAt(0);
-            if (letter < 'A' || letter > maxLetter) {
-                System.out.println("Invalid choice. Please enter a letter between A and " + maxLetter + ".");
+            String error = choiceError(input, answers);
+            if (error != null) {
+                System.out.println(error);
                 continue;
             }
-            // Ensure distinct answers
-            if (answers.contains(String.valueOf(letter))) {
-                System.out.println("You already selected that letter. Please choose a different option.");
-                continue;
-            }
-            answers.add(String.valueOf(letter));
+            answers.add(input);
         }
         return answers;
     }
 
+    /**
+     * Checks a single upper case choice letter against the valid letter
+     * range and the letters already selected.
+     *
+     * @param input the trimmed, upper cased input
+     * @param selected letters accepted so far
+     * @return an error message, or null if the letter is acceptable
+     */
+    private String choiceError(String input, List<String> selected) {
+        // Determine the valid letter range
+        char maxLetter = (char) ('A' + choices.size() - 1);
+        if (input.length() != 1) {
+            return "Please enter a single letter corresponding to a choice.";
+        }
+        char letter = input.charAt(0);
+        if (letter < 'A' || letter > maxLetter) {
+            return "Invalid choice. Please enter a letter between A and " + maxLetter + ".";
+        }
+        // Ensure distinct answers
+        if (selected.contains(input)) {
+            return "You already selected that letter. Please choose a different option.";
+        }
+        return null;
+    }
+
+    @Override
+    public List<ValidationError> validateAnswers(List<String> answers) {
+        List<ValidationError> errors = super.validateAnswers(answers);
+        if (answers != null) {
+            List<String> selected = new ArrayList<>();
+            for (int k = 0; k < answers.size(); k++) {
+                String input = answers.get(k) == null ? "" : answers.get(k).trim().toUpperCase();
+                String error = choiceError(input, selected);
+                if (error != null) {
+                    errors.add(new ValidationError(k, error));
+                } else {
+                    selected.add(input);
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public List<String> normalizeAnswers(List<String> answers) {
+        List<String> result = new ArrayList<>(answers.size());
+        for (String ans : answers) {
+            result.add(ans.trim().toUpperCase());
+        }
+        return result;
+    }
+
     @Override
     public void modify(Scanner scanner) {
+        checkMutable();
         // modify prompt
         System.out.println("Current prompt: " + getPrompt());
         System.out.print("Do you wish to modify the prompt? (Y/N): ");
@@ -1,3 +1,4 @@
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -11,6 +12,7 @@ import java.util.Scanner;
  */
 public abstract class Question implements Serializable {
     private static final long serialVersionUID = 1L;
+    protected static final String NEWLINE = System.lineSeparator();
     protected String prompt;
     /**
      * The number of responses allowed for this question.  A value of 1
@@ -19,6 +21,10 @@ public abstract class Question implements Serializable {
      * greater than 1.
      */
     protected int numResponsesAllowed = 1;
+    /** Set on questions belonging to a published snapshot. */
+    private transient boolean frozen;
+    /** Cached output of render(); cleared whenever the question changes. */
+    private transient String rendered;
 
     public Question(String prompt) {
         this.prompt = prompt;
@@ -29,6 +35,7 @@ public abstract class Question implements Serializable {
     }
 
     public void setPrompt(String prompt) {
+        checkMutable();
         this.prompt = prompt;
     }
 
@@ -40,17 +47,85 @@ public abstract class Question implements Serializable {
     }
 
     public void setNumResponsesAllowed(int n) {
+        checkMutable();
         if (n < 1) {
             throw new IllegalArgumentException("Number of responses must be positive");
         }
         this.numResponsesAllowed = n;
     }
 
+    /**
+     * Marks this question as part of a published snapshot.  Any further
+     * attempt to change it fails with an IllegalStateException.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Must be called by every method that changes the question.  Also
+     * discards the cached rendering so the next display reflects the
+     * change.
+     *
+     * @throws IllegalStateException if the question is frozen
+     */
+    protected void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Question belongs to a published snapshot and cannot be modified");
+        }
+        rendered = null;
+    }
+
     /**
      * Displays the question prompt and any additional information
-     * necessary for the respondent.
+     * necessary for the respondent, using a single write of the cached
+     * rendering.
+     */
+    public void display() {
+        System.out.print(getRendered());
+    }
+
+    /**
+     * Writes the cached rendering to the given sink.
+     *
+     * @param out destination for the rendered question
      */
-    public abstract void display();
+    public void display(PrintWriter out) {
+        out.print(getRendered());
+    }
+
+    /**
+     * Returns the text display() prints.  The text is built once and
+     * cached until the question is modified, so repeated displays (one
+     * per respondent) cost no formatting work.
+     *
+     * @return the rendered question, ending with a line separator
+     */
+    public String getRendered() {
+        String r = rendered;
+        if (r == null) {
+            Metrics.RENDER_CACHE.miss();
+            StringBuilder sb = new StringBuilder();
+            render(sb);
+            r = sb.toString();
+            rendered = r;
+        } else {
+            Metrics.RENDER_CACHE.hit();
+        }
+        return r;
+    }
+
+    /**
+     * Appends the prompt and any choices or instructions to the given
+     * builder, one line each.
+     *
+     * @param sb the builder to append to
+     */
+    protected abstract void render(StringBuilder sb);
 
     /**
      * Solicit one or more responses from the user via the provided scanner.
@@ -63,6 +138,37 @@ public abstract class Question implements Serializable {
      */
     public abstract List<String> getUserAnswer(Scanner scanner);
 
+    /**
+     * Checks a candidate list of answers against the rules enforced by
+     * getUserAnswer(), without performing any I/O or retrying.  Answers
+     * may be given either as typed at the interactive prompt or in the
+     * stored form returned by getUserAnswer().  The base implementation
+     * only checks the number of answers; subclasses add their own rules.
+     *
+     * @param answers the candidate answers
+     * @return the problems found, or an empty list if the answers are valid
+     */
+    public List<ValidationError> validateAnswers(List<String> answers) {
+        List<ValidationError> errors = new ArrayList<>();
+        int expected = getNumResponsesAllowed();
+        if (answers == null || answers.size() != expected) {
+            int actual = answers == null ? 0 : answers.size();
+            errors.add(new ValidationError(-1, "Expected " + expected + " answer(s) but received " + actual + "."));
+        }
+        return errors;
+    }
+
+    /**
+     * Converts answers that passed validateAnswers() into the stored form
+     * that getUserAnswer() would have produced for the same input.
+     *
+     * @param answers valid candidate answers
+     * @return a new list holding the answers in stored form
+     */
+    public List<String> normalizeAnswers(List<String> answers) {
+        return new ArrayList<>(answers);
+    }
+
     /**
      * Allows modification of this question.  Concrete subclasses should
      * prompt the user to change the prompt and any other configurable
@@ -0,0 +1,374 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persistent hash indexes from a key to a response file.  Each survey or
+ * test in a response directory has one index per {@link Kind}: respondent
+ * IDs map to the respondent's latest response set, and content hashes
+ * (see {@link SubmissionFilter}) to the first response set submitted
+ * with that content.  Looking up one key reads a few bytes from the index
+ * instead of deserializing every response set.
+ * <p>
+ * An index is made of two files named after the survey or test, shown
+ * here for respondent IDs:
+ * <ul>
+ *   <li>{@code <name>.rkeys} is an append-only log of records, each an
+ *       int length and UTF-8 key followed by an int length and UTF-8
+ *       response file name.</li>
+ *   <li>{@code <name>.ridx} is an open addressing hash table: a header
+ *       of magic, slot count and used slot count, then 16 byte slots
+ *       holding the key's hash and the record's offset in the log plus
+ *       one (0 marks an empty slot).</li>
+ * </ul>
+ * Content hash indexes use {@code .ckeys} and {@code .cidx}.
+ * A lookup probes the table with positioned reads and reads one record
+ * per hash match.  Writers append to the log and update the table under
+ * a lock on the log file, so several processes may save responses into
+ * the same directory.  When the table is more than 70% full it is
+ * rebuilt at twice the size and moved into place atomically.
+ */
+public final class ResponseIndex {
+    private static final int MAGIC = 0x52494458; // "RIDX"
+    private static final int HEADER_BYTES = 12;
+    private static final int SLOT_BYTES = 16;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final double MAX_LOAD = 0.7;
+    /** Serializes writers within this JVM; FileLock only excludes other processes. */
+    private static final Object WRITE_LOCK = new Object();
+
+    /** What an index is keyed by. */
+    public enum Kind {
+        RESPONDENT(".ridx", ".rkeys"),
+        CONTENT(".cidx", ".ckeys");
+
+        private final String tableSuffix;
+        private final String keysSuffix;
+
+        Kind(String tableSuffix, String keysSuffix) {
+            this.tableSuffix = tableSuffix;
+            this.keysSuffix = keysSuffix;
+        }
+    }
+
+    private ResponseIndex() {
+    }
+
+    /**
+     * Records that the response set for a key of the named survey or
+     * test is stored in the given file.  A previous entry for the same
+     * key is replaced.
+     *
+     * @param directory response directory holding the file
+     * @param name survey or test name
+     * @param kind which index to update
+     * @param key respondent ID or content hash
+     * @param fileName name of the response file within the directory
+     * @throws IOException if the index cannot be updated
+     */
+    public static void put(File directory, String name, Kind kind, String key, String fileName)
+            throws IOException {
+        synchronized (WRITE_LOCK) {
+            try (FileChannel keys = FileChannel.open(keysFile(directory, name, kind).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Held until the channel is closed
+                keys.lock();
+                long offset = keys.size();
+                byte[] id = key.getBytes(StandardCharsets.UTF_8);
+                byte[] file = fileName.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer record = ByteBuffer.allocate(8 + id.length + file.length);
+                record.putInt(id.length).put(id).putInt(file.length).put(file).flip();
+                writeFully(keys, record, offset);
+
+                File tableFile = tableFile(directory, name, kind);
+                if (!tableFile.exists()) {
+                    createTable(tableFile, INITIAL_SLOTS);
+                }
+                try (FileChannel table = FileChannel.open(tableFile.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    ByteBuffer header = readFully(table, 0, HEADER_BYTES);
+                    if (header.getInt(0) != MAGIC) {
+                        throw new IOException("Not a response index: " + tableFile);
+                    }
+                    int slots = header.getInt(4);
+                    int used = header.getInt(8);
+                    if (insert(table, keys, slots, hash(key), offset, key)) {
+                        used++;
+                        ByteBuffer count = ByteBuffer.allocate(4).putInt(used);
+                        count.flip();
+                        writeFully(table, count, 8);
+                    }
+                    if (used > slots * MAX_LOAD) {
+                        grow(tableFile, table, slots, used);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the file indexed under the key, or null if the
+     * key is not indexed.
+     * <p>
+     * Lookups take no lock, so a slot may be read while a writer is
+     * changing it and come back torn.  Records are appended to the log
+     * before any slot points at them, so every real offset lies within
+     * the log; a slot whose offset does not, or whose record holds
+     * another key, is skipped.  A torn slot therefore never yields
+     * another key's file, but a lookup that races a put of the same key,
+     * or a {@link #rebuild}, may miss it.  {@link SubmissionFilter}
+     * looks up content hashes while holding the writers' lock, so its
+     * duplicate checks are exact.
+     *
+     * @param directory response directory
+     * @param name survey or test name
+     * @param kind which index to search
+     * @param key respondent ID or content hash
+     * @return the response file name, or null
+     * @throws IOException if the index cannot be read
+     */
+    public static String lookup(File directory, String name, Kind kind, String key) throws IOException {
+        File tableFile = tableFile(directory, name, kind);
+        File keysFile = keysFile(directory, name, kind);
+        if (!tableFile.exists() || !keysFile.exists()) {
+            return null;
+        }
+        try (FileChannel table = FileChannel.open(tableFile.toPath(), StandardOpenOption.READ);
+             FileChannel keys = FileChannel.open(keysFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(table, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a response index: " + tableFile);
+            }
+            int slots = header.getInt(4);
+            long logSize = keys.size();
+            int h = hash(key);
+            for (int probe = 0, i = h & (slots - 1); probe < slots; probe++, i = (i + 1) & (slots - 1)) {
+                ByteBuffer slot = readFully(table, slotPosition(i), SLOT_BYTES);
+                long stored = slot.getLong(8);
+                if (stored == 0) {
+                    return null;
+                }
+                if (slot.getInt(0) == h) {
+                    String[] entry = readRecord(keys, stored - 1, logSize);
+                    if (entry != null && entry[0].equals(key)) {
+                        return entry[1];
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns every key ever recorded in an index, oldest first.  Keys
+     * that were put more than once appear more than once.
+     *
+     * @param directory response directory
+     * @param name survey or test name
+     * @param kind which index to read
+     * @return the keys
+     * @throws IOException if the log cannot be read
+     */
+    public static List<String> keys(File directory, String name, Kind kind) throws IOException {
+        List<String> result = new ArrayList<>();
+        File keysFile = keysFile(directory, name, kind);
+        if (!keysFile.exists()) {
+            return result;
+        }
+        try (FileChannel keys = FileChannel.open(keysFile.toPath(), StandardOpenOption.READ)) {
+            long size = keys.size();
+            for (long offset = 0; offset < size; ) {
+                String[] entry = readRecord(keys, offset, size);
+                if (entry == null) {
+                    throw new IOException("Response index log is corrupt: " + keysFile);
+                }
+                result.add(entry[0]);
+                offset += 8 + entry[0].getBytes(StandardCharsets.UTF_8).length
+                        + entry[1].getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards the indexes and {@link SubmissionFilter} of the named
+     * survey or test and rebuilds them from the response files in the
+     * directory.  Use this for responses saved before they were indexed.
+     * The filter's writer lock is held from listing the files to the last
+     * record, so a response saved meanwhile waits and is then indexed
+     * normally instead of being lost with the discarded indexes.
+     *
+     * @param directory response directory
+     * @param name survey or test name
+     * @return number of response sets indexed
+     * @throws IOException if the index cannot be written
+     */
+    public static int rebuild(File directory, String name) throws IOException {
+        directory.mkdirs();
+        return SubmissionFilter.whileLocked(directory, name, () -> rebuildLocked(directory, name));
+    }
+
+    private static int rebuildLocked(File directory, String name) throws IOException {
+        synchronized (WRITE_LOCK) {
+            for (Kind kind : Kind.values()) {
+                Files.deleteIfExists(tableFile(directory, name, kind).toPath());
+                Files.deleteIfExists(keysFile(directory, name, kind).toPath());
+            }
+        }
+        SubmissionFilter.delete(directory, name);
+        // Oldest first so the latest response set of each respondent wins
+        // and the first of identical submissions is the original
+        String[] names = GradeMatrix.sortBySaveOrder(directory, GradeMatrix.responseFileNames(directory, name));
+        int indexed = 0;
+        for (String fileName : names) {
+            ResponseSet rs;
+            try {
+                rs = ResponseSet.loadFromFile(new File(directory, fileName).getPath());
+            } catch (IOException | ClassNotFoundException e) {
+                // Skip files that cannot be parsed, and files reserved by
+                // saves that are waiting for the lock and will record
+                // themselves
+                continue;
+            }
+            if (rs.getSurveyName().equals(name)) {
+                SubmissionFilter.recordLocked(directory, rs, fileName, false);
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Inserts or replaces an entry.  Returns true if a new slot was used.
+     */
+    private static boolean insert(FileChannel table, FileChannel keys, int slots, int h, long offset,
+                                  String key) throws IOException {
+        long logSize = keys.size();
+        for (int probe = 0, i = h & (slots - 1); probe < slots; probe++, i = (i + 1) & (slots - 1)) {
+            ByteBuffer slot = readFully(table, slotPosition(i), SLOT_BYTES);
+            long stored = slot.getLong(8);
+            boolean empty = stored == 0;
+            String[] entry = empty || slot.getInt(0) != h ? null : readRecord(keys, stored - 1, logSize);
+            if (empty || (entry != null && entry[0].equals(key))) {
+                writeSlot(table, i, h, offset);
+                return empty;
+            }
+        }
+        throw new IOException("Response index is full");
+    }
+
+    /**
+     * Copies every entry into a table twice the size and moves it over
+     * the current one.  Readers with the old table open keep a
+     * consistent view.
+     */
+    private static void grow(File tableFile, FileChannel table, int slots, int used) throws IOException {
+        int newSlots = slots * 2;
+        File tmp = new File(tableFile.getPath() + ".tmp");
+        createTable(tmp, newSlots);
+        try (FileChannel bigger = FileChannel.open(tmp.toPath(), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            for (int i = 0; i < slots; i++) {
+                ByteBuffer slot = readFully(table, slotPosition(i), SLOT_BYTES);
+                long stored = slot.getLong(8);
+                if (stored == 0) {
+                    continue;
+                }
+                int h = slot.getInt(0);
+                int j = h & (newSlots - 1);
+                while (readFully(bigger, slotPosition(j), SLOT_BYTES).getLong(8) != 0) {
+                    j = (j + 1) & (newSlots - 1);
+                }
+                writeSlot(bigger, j, h, stored - 1);
+            }
+            ByteBuffer count = ByteBuffer.allocate(4).putInt(used);
+            count.flip();
+            writeFully(bigger, count, 8);
+        }
+        Files.move(tmp.toPath(), tableFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void createTable(File file, int slots) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(slots).putInt(0);
+            header.flip();
+            writeFully(ch, header, 0);
+            // Extend the file so every slot reads back as empty
+            ByteBuffer last = ByteBuffer.allocate(1);
+            writeFully(ch, last, slotPosition(slots) - 1);
+        }
+    }
+
+    private static void writeSlot(FileChannel table, int i, int h, long offset) throws IOException {
+        ByteBuffer slot = ByteBuffer.allocate(SLOT_BYTES).putInt(h).putInt(0).putLong(offset + 1);
+        slot.flip();
+        writeFully(table, slot, slotPosition(i));
+    }
+
+    /**
+     * Reads the key and file name of the record at an offset, or returns
+     * null if the offset or the lengths found there run past
+     * {@code logSize}, as they can for an offset from a torn slot.
+     */
+    private static String[] readRecord(FileChannel keys, long offset, long logSize) throws IOException {
+        if (offset < 0 || offset + 8 > logSize) {
+            return null;
+        }
+        int idLength = readFully(keys, offset, 4).getInt(0);
+        if (idLength < 0 || offset + 8 + idLength > logSize) {
+            return null;
+        }
+        ByteBuffer rest = readFully(keys, offset + 4, idLength + 4);
+        String id = new String(rest.array(), 0, idLength, StandardCharsets.UTF_8);
+        int fileLength = rest.getInt(idLength);
+        if (fileLength < 0 || offset + 8 + idLength + fileLength > logSize) {
+            return null;
+        }
+        ByteBuffer file = readFully(keys, offset + 8 + idLength, fileLength);
+        return new String[] {id, new String(file.array(), StandardCharsets.UTF_8)};
+    }
+
+    private static long slotPosition(int i) {
+        return HEADER_BYTES + (long) i * SLOT_BYTES;
+    }
+
+    /** Spreads the String hash so consecutive IDs do not cluster. */
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Response index is truncated");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf, position + buf.position());
+        }
+    }
+
+    private static File tableFile(File directory, String name, Kind kind) {
+        return new File(directory, name.replaceAll("[^a-zA-Z0-9_-]", "_") + kind.tableSuffix);
+    }
+
+    private static File keysFile(File directory, String name, Kind kind) {
+        return new File(directory, name.replaceAll("[^a-zA-Z0-9_-]", "_") + kind.keysSuffix);
+    }
+}
\ No newline at end of file
@@ -5,27 +5,124 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a set of responses to a particular survey.  Stores the name
  * of the survey and the list of answers provided for each question.  The
  * response set can be serialized to disk to preserve the answers.
  */
-public class ResponseSet implements Serializable {
+public class ResponseSet implements Serializable, AnswerAccessor {
     private static final long serialVersionUID = 1L;
+    /** Sequence used to keep file names unique within one second. */
+    private static final AtomicLong FILE_SEQUENCE = new AtomicLong();
     private final String surveyName;
     private final List<List<String>> responses;
     private final Date timestamp;
+    /** Version of the survey or test answered; 0 if unknown. */
+    private final int surveyVersion;
+    /**
+     * Milliseconds the respondent spent on each question, or null if the
+     * answers were not collected interactively.
+     */
+    private final int[] answerMillis;
+    /** Identifies who answered, or null for an anonymous response. */
+    private final String respondentId;
+    /**
+     * Identifies the submission itself, so a retry of it can be told
+     * apart from another respondent giving the same answers; may be null.
+     */
+    private final String submissionId;
+    /**
+     * File name of an earlier identical submission, set when this one was
+     * saved as a flagged duplicate; null otherwise.
+     */
+    private String duplicateOf;
+    /** Lazily built read-only view over {@link #responses}. */
+    private transient List<List<String>> view;
 
     public ResponseSet(String surveyName, List<List<String>> responses) {
+        this(surveyName, responses, 0);
+    }
+
+    /**
+     * Creates a response set tagged with the version of the survey or
+     * test that was answered.
+     *
+     * @param surveyName name of the survey or test
+     * @param responses answers, one list per question
+     * @param surveyVersion version returned by getVersion() when taken
+     */
+    public ResponseSet(String surveyName, List<List<String>> responses, int surveyVersion) {
+        this(surveyName, responses, surveyVersion, null);
+    }
+
+    /**
+     * Creates a response set that also records how long the respondent
+     * took to answer each question.
+     *
+     * @param surveyName name of the survey or test
+     * @param responses answers, one list per question
+     * @param surveyVersion version returned by getVersion() when taken
+     * @param answerMillis milliseconds spent per question, or null
+     */
+    public ResponseSet(String surveyName, List<List<String>> responses, int surveyVersion,
+                       int[] answerMillis) {
+        this(surveyName, responses, surveyVersion, answerMillis, null);
+    }
+
+    /**
+     * Creates a response set attributed to a respondent.  Saving it with
+     * {@link #saveToUniqueFile} adds it to the {@link ResponseIndex} so
+     * it can be found again without reading other response sets.
+     *
+     * @param surveyName name of the survey or test
+     * @param responses answers, one list per question
+     * @param surveyVersion version returned by getVersion() when taken
+     * @param answerMillis milliseconds spent per question, or null
+     * @param respondentId who answered, or null if anonymous
+     */
+    public ResponseSet(String surveyName, List<List<String>> responses, int surveyVersion,
+                       int[] answerMillis, String respondentId) {
+        this(surveyName, responses, surveyVersion, answerMillis, respondentId, null);
+    }
+
+    /**
+     * Creates a response set carrying the client's ID for the submission.
+     * Saving a response set with the same submission ID again counts as
+     * a duplicate, whatever the answers.
+     *
+     * @param surveyName name of the survey or test
+     * @param responses answers, one list per question
+     * @param surveyVersion version returned by getVersion() when taken
+     * @param answerMillis milliseconds spent per question, or null
+     * @param respondentId who answered, or null if anonymous
+     * @param submissionId ID of this submission, or null
+     */
+    public ResponseSet(String surveyName, List<List<String>> responses, int surveyVersion,
+                       int[] answerMillis, String respondentId, String submissionId) {
+        this.respondentId = respondentId == null || respondentId.isBlank() ? null : respondentId.trim();
+        this.submissionId = submissionId == null || submissionId.isBlank() ? null : submissionId.trim();
+        this.surveyVersion = surveyVersion;
+        this.answerMillis = answerMillis == null ? null : answerMillis.clone();
         this.surveyName = surveyName;
         this.responses = new ArrayList<>();
         for (List<String> ans : responses) {
-            this.responses.add(new ArrayList<>(ans));
+            List<String> copy = new ArrayList<>(ans.size());
+            for (String a : ans) {
+                copy.add(AnswerPool.canonical(a));
+            }
+            this.responses.add(copy);
         }
         this.timestamp = new Date();
     }
@@ -42,10 +139,183 @@ public class ResponseSet implements Serializable {
         return copy;
     }
 
+    /**
+     * Returns a read-only view of the responses.  Unlike
+     * {@link #getResponses()} nothing is copied; the view is built once
+     * and reused, so it is suitable for tabulation and grading loops.
+     *
+     * @return unmodifiable list of unmodifiable answer lists
+     */
+    public List<List<String>> getResponsesView() {
+        if (view == null) {
+            List<List<String>> inner = new ArrayList<>(responses.size());
+            for (List<String> ans : responses) {
+                inner.add(Collections.unmodifiableList(ans));
+            }
+            view = Collections.unmodifiableList(inner);
+        }
+        return view;
+    }
+
+    /**
+     * Returns the number of questions this response set holds answers for.
+     */
+    @Override
+    public int questionCount() {
+        return responses.size();
+    }
+
+    /**
+     * Returns the number of answers given to the specified question, or 0
+     * if the response set has no entry for it.
+     *
+     * @param question zero based question index
+     * @return number of answers
+     */
+    @Override
+    public int answerCount(int question) {
+        if (question < 0 || question >= responses.size()) {
+            return 0;
+        }
+        return responses.get(question).size();
+    }
+
+    /**
+     * Returns a single answer without copying.
+     *
+     * @param question zero based question index
+     * @param k zero based answer index within the question
+     * @return the answer string
+     */
+    @Override
+    public String answer(int question, int k) {
+        return responses.get(question).get(k);
+    }
+
+    /**
+     * Returns a read-only view of the answers to one question.
+     *
+     * @param question zero based question index
+     * @return unmodifiable list of answers, empty if there is no entry
+     */
+    @Override
+    public List<String> answers(int question) {
+        if (question < 0 || question >= responses.size()) {
+            return Collections.emptyList();
+        }
+        return getResponsesView().get(question);
+    }
+
+    public int getSurveyVersion() {
+        return surveyVersion;
+    }
+
+    /**
+     * Returns the respondent's ID, or null if the response is anonymous.
+     */
+    public String getRespondentId() {
+        return respondentId;
+    }
+
+    /**
+     * Returns the ID the client gave this submission, or null.
+     */
+    public String getSubmissionId() {
+        return submissionId;
+    }
+
+    /**
+     * Returns the file name of the earlier identical submission this one
+     * was flagged as a duplicate of, or null.
+     */
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    /**
+     * Returns a hash identifying the submission, or null if it cannot be
+     * told apart from another respondent's.  With a submission ID the
+     * hash covers the survey name and that ID.  Otherwise it covers the
+     * survey name and version, respondent ID and answers, but not the
+     * answer times, which differ between a submission and its retry.
+     * Anonymous response sets without a submission ID have no key, since
+     * different people may give the same answers.  Two response sets with
+     * the same key are the same submission.
+     */
+    String contentKey() {
+        if (respondentId == null && submissionId == null) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        update(digest, surveyName);
+        if (submissionId != null) {
+            update(digest, "submission");
+            update(digest, submissionId);
+        } else {
+            update(digest, "answers");
+            update(digest, Integer.toString(surveyVersion));
+            update(digest, respondentId);
+            for (List<String> answers : responses) {
+                update(digest, Integer.toString(answers.size()));
+                for (String a : answers) {
+                    update(digest, a);
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        byte[] hash = digest.digest();
+        // 128 bits are plenty to tell submissions apart
+        for (int i = 0; i < 16; i++) {
+            sb.append(String.format("%02x", hash[i]));
+        }
+        return sb.toString();
+    }
+
+    /** Adds a length-prefixed string so field boundaries are unambiguous. */
+    private static void update(MessageDigest digest, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Returns the milliseconds the respondent spent on a question, or -1
+     * if no time was recorded.
+     *
+     * @param question zero based question index
+     * @return answer time in milliseconds, or -1
+     */
+    @Override
+    public int answerMillis(int question) {
+        if (answerMillis == null || question < 0 || question >= answerMillis.length) {
+            return -1;
+        }
+        return answerMillis[question];
+    }
+
     public Date getTimestamp() {
         return timestamp;
     }
 
+    /**
+     * Restores the serialized fields and replaces every answer with its
+     * pooled instance, so response sets loaded from disk share strings.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (List<String> ans : responses) {
+            ans.replaceAll(AnswerPool::canonical);
+        }
+    }
+
     /**
      * Serialize this response set to the given file path.  The parent
      * directory is created if necessary.
@@ -59,8 +329,18 @@ public class ResponseSet implements Serializable {
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+        long start = System.nanoTime();
+        SurveyEvents.Save event = new SurveyEvents.Save();
+        event.begin();
+        try (FileOutputStream stream = new FileOutputStream(file);
+             ObjectOutputStream out = new ObjectOutputStream(stream)) {
             out.writeObject(this);
+            if (event.shouldCommit()) {
+                out.flush();
+                event.commit("ResponseSet", filePath, surveyName, questionCount(), 1, stream.getChannel().position());
+            }
+        } finally {
+            Metrics.RESPONSE_SAVE.recordSince(start);
         }
     }
 
@@ -77,6 +357,63 @@ public class ResponseSet implements Serializable {
         return safeName + "_" + ts + ".resp";
     }
 
+    /**
+     * Serializes this response set into the given directory under a name
+     * that is guaranteed not to clash with an existing file.  Generated
+     * file names only have second resolution, so a sequence number is
+     * appended; this matters when many responses are saved at once, for
+     * example by the HTTP server or bulk ingestion.
+     * <p>
+     * A submission with a respondent or submission ID is checked against
+     * the {@link SubmissionFilter} of the directory first.  A duplicate is
+     * saved with
+     * {@link #getDuplicateOf()} set, or refused when the filter's policy
+     * is to reject duplicates.
+     * <p>
+     * The response set is written to a temporary file before it is
+     * recorded in the filter and then moved into place, so a disk that
+     * is full or read-only fails the save before anything is indexed.
+     * If a later step fails the file is removed, and the filter treats an
+     * index entry whose file is gone as no submission, so a retry is
+     * accepted.
+     *
+     * @param directory the responses directory (created if necessary)
+     * @return the file that was written
+     * @throws SubmissionFilter.DuplicateException if this is a duplicate
+     *         and duplicates are rejected
+     * @throws IOException if an I/O error occurs
+     */
+    public File saveToUniqueFile(String directory) throws IOException {
+        File dir = new File(directory);
+        dir.mkdirs();
+        String fileName = generateFileName();
+        String base = fileName.substring(0, fileName.length() - ".resp".length());
+        // Not a .resp file, so loaders and index rebuilds never see it
+        File tmp = Files.createTempFile(dir.toPath(), base + "_", ".tmp").toFile();
+        File file = null;
+        try {
+            saveToFile(tmp.getPath());
+            do {
+                file = new File(dir, base + "_" + FILE_SEQUENCE.incrementAndGet() + ".resp");
+            } while (!file.createNewFile());
+            duplicateOf = SubmissionFilter.record(dir, this, file.getName(),
+                    SubmissionFilter.POLICY == SubmissionFilter.Policy.REJECT);
+            if (duplicateOf != null) {
+                saveToFile(tmp.getPath());
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            duplicateOf = null;
+            tmp.delete();
+            if (file != null) {
+                file.delete();
+            }
+            throw e;
+        }
+    }
+
     /**
      * Loads a ResponseSet object from the given file.
      *
@@ -86,13 +423,53 @@ public class ResponseSet implements Serializable {
      * @throws ClassNotFoundException if the class cannot be resolved
      */
     public static ResponseSet loadFromFile(String filePath) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filePath))) {
+        long start = System.nanoTime();
+        SurveyEvents.Load event = new SurveyEvents.Load();
+        event.begin();
+        try (FileInputStream file = new FileInputStream(filePath);
+             ObjectInputStream in = new ObjectInputStream(file)) {
             Object obj = in.readObject();
+            long bytes = file.getChannel().position();
+            Metrics.BYTES_READ.add(bytes);
             if (obj instanceof ResponseSet) {
-                return (ResponseSet) obj;
+                ResponseSet loaded = (ResponseSet) obj;
+                if (event.shouldCommit()) {
+                    event.commit("ResponseSet", filePath, loaded.surveyName, loaded.questionCount(), 1, bytes);
+                }
+                return loaded;
             } else {
                 throw new IOException("File does not contain a ResponseSet object.");
             }
+        } finally {
+            Metrics.RESPONSE_LOAD.recordSince(start);
+        }
+    }
+
+    /**
+     * Loads the latest response set a respondent saved for the named
+     * survey or test, using the {@link SubmissionFilter} and
+     * {@link ResponseIndex} of the directory instead of reading every
+     * response file.
+     *
+     * @param directory the responses directory
+     * @param name survey or test name
+     * @param respondentId the respondent
+     * @return the response set, or null if the respondent has none
+     * @throws IOException if the index or response file cannot be read
+     * @throws ClassNotFoundException if class resolution fails
+     */
+    public static ResponseSet findByRespondent(String directory, String name, String respondentId)
+            throws IOException, ClassNotFoundException {
+        File dir = new File(directory);
+        respondentId = respondentId.trim();
+        if (!SubmissionFilter.mightHaveResponded(dir, name, respondentId)) {
+            return null;
+        }
+        String fileName = ResponseIndex.lookup(dir, name, ResponseIndex.Kind.RESPONDENT, respondentId);
+        if (fileName == null) {
+            return null;
         }
+        File file = new File(dir, fileName);
+        return file.isFile() ? loadFromFile(file.getPath()) : null;
     }
 }
\ No newline at end of file
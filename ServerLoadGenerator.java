@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simple load generator for {@link SurveyServer}.  Simulates a number of
+ * concurrent respondents, each of which fetches the survey and submits
+ * the same answer sheet under its own respondent ID, then reports
+ * throughput and failures.  The IDs are unique per run, so the
+ * {@link SubmissionFilter} does not treat the submissions as
+ * duplicates.
+ * <p>
+ * Usage: {@code java ServerLoadGenerator <url> <answer file> [respondents] [concurrency]}
+ * where the url is e.g. {@code http://localhost:8080/surveys/Pets} and
+ * the answer file holds {@code <question number>=<answer>} lines.
+ */
+public class ServerLoadGenerator {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: java ServerLoadGenerator <url> <answer file> [respondents] [concurrency]");
+            return;
+        }
+        URI uri = URI.create(args[0]);
+        String body = new String(Files.readAllBytes(Paths.get(args[1])), "UTF-8");
+        int respondents = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        HttpClient client = HttpClient.newBuilder().build();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch done = new CountDownLatch(respondents);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long start = System.nanoTime();
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        for (int i = 0; i < respondents; i++) {
+            URI submitUri = URI.create(args[0] + (args[0].contains("?") ? "&" : "?")
+                    + "respondent=load-" + run + "-" + i);
+            pool.execute(() -> {
+                try {
+                    HttpResponse<String> page = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    HttpResponse<String> resp = client.send(HttpRequest.newBuilder(submitUri)
+                                    .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                    if (page.statusCode() == 200 && resp.statusCode() == 201) {
+                        ok.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d respondents (%d concurrent) in %.2f s: %.0f submissions/s, %d failed%n",
+                respondents, concurrency, seconds, ok.get() / seconds, failed.get());
+    }
+}
\ No newline at end of file
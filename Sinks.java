@@ -0,0 +1,55 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Factory for the buffered output sinks used by display, tabulation and
+ * grading.  Rendering methods write to a PrintWriter rather than calling
+ * System.out line by line, so output can go to the console, a file, a
+ * socket or an in-memory StringWriter with one large buffer in front.
+ * Callers must flush (or close, for files) the returned writer.
+ */
+public final class Sinks {
+    /** Buffer size for sinks created here. */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    private Sinks() {
+    }
+
+    /**
+     * Returns a buffered writer over System.out using the platform
+     * charset, as System.out does.  Flush it when done; do not close it,
+     * as that would close System.out.
+     */
+    public static PrintWriter console() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, Charset.defaultCharset()), BUFFER_SIZE));
+    }
+
+    /**
+     * Returns a buffered UTF-8 writer over the given stream.
+     */
+    public static PrintWriter to(OutputStream out) {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    /**
+     * Returns a buffered writer that creates or replaces the given file.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public static PrintWriter toFile(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        return to(new FileOutputStream(file));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,132 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Holds the currently published, read-only version of each survey or
+ * test by name.  Respondents take whatever snapshot is current when they
+ * start; publishing a new version replaces the reference atomically
+ * (copy-on-write), so sessions already in flight keep answering the
+ * version they started with and never see a half edited question.
+ * <p>
+ * Editors work on an editable copy (e.g. {@link Survey#editableCopy()})
+ * and hand it to {@link #publish}, which stores a frozen snapshot of it.
+ * The copy remembers the version it was made from, and publishing
+ * succeeds only while that version is still the published one, so an
+ * editor working from a stale copy cannot overwrite another editor's
+ * change.
+ *
+ * @param <T> Survey or Test
+ */
+public class SnapshotRegistry<T> {
+    private final Map<String, T> published = new ConcurrentHashMap<>();
+    private final UnaryOperator<T> snapshotter;
+    private final ToIntFunction<T> versionOf;
+    private final ToIntFunction<T> baseVersionOf;
+    private final ObjIntConsumer<T> rebase;
+
+    /**
+     * @param snapshotter creates a frozen copy of an editable instance
+     * @param versionOf returns the version number of an instance
+     * @param baseVersionOf returns the version an editable copy was made
+     *                      from, or -1 if the instance is not a copy
+     * @param rebase records the version a copy is based on after it has
+     *               been published
+     */
+    public SnapshotRegistry(UnaryOperator<T> snapshotter, ToIntFunction<T> versionOf,
+                            ToIntFunction<T> baseVersionOf, ObjIntConsumer<T> rebase) {
+        this.snapshotter = snapshotter;
+        this.versionOf = versionOf;
+        this.baseVersionOf = baseVersionOf;
+        this.rebase = rebase;
+    }
+
+    /**
+     * Returns a registry for surveys.
+     */
+    public static SnapshotRegistry<Survey> forSurveys() {
+        return new SnapshotRegistry<>(Survey::snapshot, Survey::getVersion, Survey::getBaseVersion,
+                Survey::setBaseVersion);
+    }
+
+    /**
+     * Returns a registry for tests.
+     */
+    public static SnapshotRegistry<Test> forTests() {
+        return new SnapshotRegistry<>(Test::snapshot, Test::getVersion, Test::getBaseVersion,
+                Test::setBaseVersion);
+    }
+
+    /**
+     * Returns the current snapshot published under the given name, or
+     * null if nothing has been published.  Lock-free.
+     */
+    public T get(String name) {
+        return published.get(key(name));
+    }
+
+    /**
+     * Publishes a frozen snapshot of the given instance under the given
+     * name.  For an editable copy this is a compare-and-set: it fails
+     * unless the published version is still the one the copy was made
+     * from, which is not the case when another editor published a change
+     * first.  Any other instance must carry a newer version than the
+     * published one.  After publishing, the copy counts as based on the
+     * new version, so its editor can keep editing and publish again.
+     *
+     * @param name survey or test name
+     * @param edited the edited instance
+     * @return the published snapshot
+     * @throws IllegalStateException if another version was published since
+     *                               the copy was made, or a newer or equal
+     *                               version is already published
+     */
+    public T publish(String name, T edited) {
+        T snapshot = snapshotter.apply(edited);
+        int version = versionOf.applyAsInt(snapshot);
+        int base = baseVersionOf.applyAsInt(edited);
+        T result = published.compute(key(name), (k, current) -> {
+            if (current != null) {
+                int currentVersion = versionOf.applyAsInt(current);
+                if (currentVersion >= version || (base >= 0 && currentVersion != base)) {
+                    throw new IllegalStateException("Version " + currentVersion
+                            + " of '" + name + "' is already published; reload before editing.");
+                }
+            }
+            return snapshot;
+        });
+        rebase.accept(edited, version);
+        return result;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase();
+    }
+
+    /**
+     * Returns a deep copy of the given object made through serialization.
+     * Used by Survey and Test to create snapshots and editable copies.
+     */
+    @SuppressWarnings("unchecked")
+    static <S extends Serializable> S deepCopy(S obj) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(obj);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return (S) in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Unable to copy " + obj.getClass().getName(), e);
+        }
+    }
+}
\ No newline at end of file
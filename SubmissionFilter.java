@@ -0,0 +1,360 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Detects duplicate submissions when response sets are saved, without
+ * loading the response sets already stored.  Each survey or test in a
+ * response directory has a Bloom filter over its respondent IDs and
+ * submission content hashes ({@link ResponseSet#contentKey()}).  A save
+ * probes the filter with a fixed number of reads; only when the filter
+ * reports a possible match is the exact {@link ResponseIndex} consulted,
+ * so false positives never cause a duplicate to be reported.
+ * <p>
+ * A submission is a duplicate when an earlier one has the same content
+ * hash: the same submission ID, or without one the same respondent ID
+ * and answers, so a retried or doubly posted submission matches.
+ * Anonymous submissions without a submission ID are never duplicates,
+ * since different people may give the same answers.  An earlier
+ * submission whose response file no longer exists does not count, so
+ * a save that failed after being recorded can be retried.  What happens to a
+ * duplicate is set with
+ * {@code -Dsurvey.duplicates}: {@code flag} (the default) saves it with
+ * {@link ResponseSet#getDuplicateOf()} set, {@code reject} refuses it
+ * with a {@link DuplicateException}.
+ * <p>
+ * The filter is stored as {@code <name>.bloom} next to the indexes: a
+ * header of magic, hash count, word count and entry count followed by the
+ * bit array as longs.  Bits are set in place with positioned writes.
+ * Writers hold a lock on {@code <name>.lock}; when the filter holds more
+ * entries than it was sized for it is rebuilt from the index logs at
+ * twice the size and moved into place atomically.
+ */
+public final class SubmissionFilter {
+    /** What saving a duplicate submission does. */
+    public enum Policy {
+        FLAG,
+        REJECT
+    }
+
+    public static final Policy POLICY = "reject".equalsIgnoreCase(System.getProperty("survey.duplicates"))
+            ? Policy.REJECT : Policy.FLAG;
+
+    private static final int MAGIC = 0x424C4F4D; // "BLOM"
+    private static final int HEADER_BYTES = 16;
+    /** 2^16 bits to start with. */
+    private static final int INITIAL_WORDS = 1 << 10;
+    private static final int HASHES = 7;
+    /** With seven hashes, ten bits per entry gives about 1% false positives. */
+    private static final int BITS_PER_ENTRY = 10;
+    private static final String RESPONDENT_PREFIX = "r:";
+    private static final String CONTENT_PREFIX = "c:";
+    /** Serializes writers within this JVM; FileLock only excludes other processes. */
+    private static final Object WRITE_LOCK = new Object();
+
+    private SubmissionFilter() {
+    }
+
+    /**
+     * Thrown when a duplicate submission is saved under the reject
+     * policy.
+     */
+    public static class DuplicateException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final String existingFile;
+
+        public DuplicateException(String existingFile) {
+            super("Duplicate of the response already saved in " + existingFile);
+            this.existingFile = existingFile;
+        }
+
+        /** Returns the name of the response file this submission repeats. */
+        public String getExistingFile() {
+            return existingFile;
+        }
+    }
+
+    /**
+     * Records a response set saved to the given file in the filter and
+     * both indexes, and returns the file of an earlier identical
+     * submission, or null if there is none.  A duplicate's content hash
+     * keeps pointing at the original file.  Anonymous response sets
+     * without a submission ID have no content hash and nothing to index,
+     * so they are not recorded.
+     *
+     * @param directory response directory holding the file
+     * @param rs the response set
+     * @param fileName name of the response file within the directory
+     * @param reject throw instead of recording a duplicate
+     * @return the earlier identical submission's file name, or null
+     * @throws DuplicateException if reject is true and rs is a duplicate
+     * @throws IOException if the filter or indexes cannot be updated
+     */
+    public static String record(File directory, ResponseSet rs, String fileName, boolean reject)
+            throws IOException {
+        if (rs.contentKey() == null) {
+            return null;
+        }
+        return whileLocked(directory, rs.getSurveyName(), () -> recordLocked(directory, rs, fileName, reject));
+    }
+
+    /** Work done while holding the writers' lock. */
+    interface LockedAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Runs an action while holding the lock every writer of the named
+     * survey's or test's filter and indexes takes: a monitor within this
+     * JVM and a lock on {@code <name>.lock} across processes.  The
+     * action must not call {@link #record}, which takes the lock again;
+     * it may call {@link #recordLocked}.
+     *
+     * @param directory response directory
+     * @param name survey or test name
+     * @param action the work to do
+     * @return the action's result
+     * @throws IOException if the lock cannot be taken or the action fails
+     */
+    static <T> T whileLocked(File directory, String name, LockedAction<T> action) throws IOException {
+        synchronized (WRITE_LOCK) {
+            try (FileChannel lockChannel = FileChannel.open(lockFile(directory, name).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // Held until the channel is closed
+                lockChannel.lock();
+                return action.run();
+            }
+        }
+    }
+
+    /**
+     * Does the work of {@link #record} for a caller that already holds
+     * the lock of {@link #whileLocked}.
+     */
+    static String recordLocked(File directory, ResponseSet rs, String fileName, boolean reject)
+            throws IOException {
+        String name = rs.getSurveyName();
+        String contentKey = rs.contentKey();
+        String respondentId = rs.getRespondentId();
+        if (contentKey == null) {
+            return null;
+        }
+        File filterFile = filterFile(directory, name);
+        if (!filterFile.exists()) {
+            build(directory, name, filterFile, INITIAL_WORDS);
+        }
+        String existing = null;
+        int grownWords = 0;
+        try (FileChannel channel = FileChannel.open(filterFile.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            Filter filter = new Filter(channel, filterFile);
+            if (filter.mightContain(CONTENT_PREFIX + contentKey)) {
+                existing = ResponseIndex.lookup(directory, name, ResponseIndex.Kind.CONTENT, contentKey);
+                if (existing == null) {
+                    Metrics.FILTER_FALSE_POSITIVES.increment();
+                } else if (!new File(directory, existing).isFile()) {
+                    // The save that indexed it failed and removed the file
+                    existing = null;
+                }
+            }
+            if (existing != null) {
+                Metrics.DUPLICATES.increment();
+                if (reject) {
+                    throw new DuplicateException(existing);
+                }
+            } else {
+                ResponseIndex.put(directory, name, ResponseIndex.Kind.CONTENT, contentKey, fileName);
+                filter.add(CONTENT_PREFIX + contentKey);
+            }
+            if (respondentId != null) {
+                ResponseIndex.put(directory, name, ResponseIndex.Kind.RESPONDENT, respondentId, fileName);
+                if (!filter.mightContain(RESPONDENT_PREFIX + respondentId)) {
+                    filter.add(RESPONDENT_PREFIX + respondentId);
+                }
+            }
+            if (filter.isFull()) {
+                grownWords = filter.words * 2;
+            }
+        }
+        if (grownWords > 0) {
+            build(directory, name, filterFile, grownWords);
+        }
+        return existing;
+    }
+
+    /**
+     * Returns false if the respondent has certainly not answered the
+     * named survey or test, so the caller can skip the index lookup.
+     * Returns true if they may have, or if there is no filter yet.
+     *
+     * @param directory response directory
+     * @param name survey or test name
+     * @param respondentId the respondent
+     * @throws IOException if the filter cannot be read
+     */
+    public static boolean mightHaveResponded(File directory, String name, String respondentId)
+            throws IOException {
+        File filterFile = filterFile(directory, name);
+        if (!filterFile.exists()) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(filterFile.toPath(), StandardOpenOption.READ)) {
+            return new Filter(channel, filterFile).mightContain(RESPONDENT_PREFIX + respondentId);
+        }
+    }
+
+    /**
+     * Deletes the filter of the named survey or test.  The next
+     * {@link #record} rebuilds it from the index logs.  The caller must
+     * hold the lock of {@link #whileLocked}.
+     */
+    static void delete(File directory, String name) throws IOException {
+        Files.deleteIfExists(filterFile(directory, name).toPath());
+    }
+
+    /**
+     * Writes a filter with the given number of words holding every key
+     * in the index logs, and moves it over the current one.
+     */
+    private static void build(File directory, String name, File filterFile, int words) throws IOException {
+        Set<String> keys = new HashSet<>();
+        for (String key : ResponseIndex.keys(directory, name, ResponseIndex.Kind.RESPONDENT)) {
+            keys.add(RESPONDENT_PREFIX + key);
+        }
+        for (String key : ResponseIndex.keys(directory, name, ResponseIndex.Kind.CONTENT)) {
+            keys.add(CONTENT_PREFIX + key);
+        }
+        while ((long) keys.size() * BITS_PER_ENTRY > (long) words * 64) {
+            words *= 2;
+        }
+        long[] bits = new long[words];
+        long mask = (long) words * 64 - 1;
+        for (String key : keys) {
+            long h1 = hash(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = (h1 + i * h2) & mask;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + words * 8);
+        buf.putInt(MAGIC).putInt(HASHES).putInt(words).putInt(keys.size());
+        buf.asLongBuffer().put(bits);
+        buf.rewind();
+        File tmp = new File(filterFile.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                ch.write(buf, buf.position());
+            }
+        }
+        Files.move(tmp.toPath(), filterFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** An open filter file. */
+    private static final class Filter {
+        private final FileChannel channel;
+        private final int hashes;
+        private final int words;
+        private int count;
+
+        Filter(FileChannel channel, File file) throws IOException {
+            this.channel = channel;
+            ByteBuffer header = read(0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a submission filter: " + file);
+            }
+            hashes = header.getInt(4);
+            words = header.getInt(8);
+            count = header.getInt(12);
+        }
+
+        boolean mightContain(String key) throws IOException {
+            long h1 = hash(key);
+            long h2 = mix(h1) | 1;
+            long mask = (long) words * 64 - 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                if ((read(wordPosition(bit), 8).getLong(0) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(String key) throws IOException {
+            long h1 = hash(key);
+            long h2 = mix(h1) | 1;
+            long mask = (long) words * 64 - 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = (h1 + i * h2) & mask;
+                long word = read(wordPosition(bit), 8).getLong(0);
+                if ((word & (1L << bit)) == 0) {
+                    write(ByteBuffer.allocate(8).putLong(0, word | (1L << bit)), wordPosition(bit));
+                }
+            }
+            count++;
+            write(ByteBuffer.allocate(4).putInt(0, count), 12);
+        }
+
+        boolean isFull() {
+            return (long) count * BITS_PER_ENTRY > (long) words * 64;
+        }
+
+        private static long wordPosition(long bit) {
+            return HEADER_BYTES + (bit >>> 6) * 8;
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(length);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0) {
+                    throw new IOException("Submission filter is truncated");
+                }
+            }
+            buf.flip();
+            return buf;
+        }
+
+        private void write(ByteBuffer buf, long position) throws IOException {
+            while (buf.hasRemaining()) {
+                channel.write(buf, position + buf.position());
+            }
+        }
+    }
+
+    /** 64-bit FNV-1a over the key's chars, finished with {@link #mix}. */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /** MurmurHash3 finalizer. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ae63bL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static File filterFile(File directory, String name) {
+        return new File(directory, name.replaceAll("[^a-zA-Z0-9_-]", "_") + ".bloom");
+    }
+
+    private static File lockFile(File directory, String name) {
+        return new File(directory, name.replaceAll("[^a-zA-Z0-9_-]", "_") + ".lock");
+    }
+}
\ No newline at end of file
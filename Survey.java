@@ -4,9 +4,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -19,6 +23,19 @@ public class Survey implements Serializable {
     private static final long serialVersionUID = 1L;
     private String name;
     private final List<Question> questions;
+    /**
+     * Incremented on every change.  Response sets record the version of
+     * the survey they answered.  Files saved before versioning existed load
+     * as version 0.
+     */
+    private int version;
+    /** Set on published snapshots, which must not change. */
+    private transient boolean frozen;
+    /**
+     * Version of the snapshot this survey was copied from by
+     * {@link #editableCopy()}, or null if it is not an editable copy.
+     */
+    private transient Integer baseVersion;
 
     public Survey(String name) {
         this.name = name;
@@ -30,10 +47,72 @@ public class Survey implements Serializable {
     }
 
     public void setName(String name) {
+        touch();
         this.name = name;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Checks that this survey may be changed and bumps its version.
+     *
+     * @throws IllegalStateException if this is a published snapshot
+     */
+    private void touch() {
+        if (frozen) {
+            throw new IllegalStateException("Published snapshots cannot be modified; edit a copy instead");
+        }
+        version++;
+    }
+
+    /**
+     * Returns a frozen deep copy of this survey.  Snapshots are read-only, so
+     * any number of threads may take them concurrently without locking
+     * while an editor works on another copy.
+     *
+     * @return read-only copy carrying the same version
+     */
+    public Survey snapshot() {
+        Survey copy = SnapshotRegistry.deepCopy(this);
+        copy.frozen = true;
+        for (Question q : copy.questions) {
+            q.freeze();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a mutable deep copy of this survey, typically of a published
+     * snapshot, for an editor to change and publish as the next version.
+     */
+    public Survey editableCopy() {
+        Survey copy = SnapshotRegistry.deepCopy(this);
+        copy.baseVersion = version;
+        return copy;
+    }
+
+    /**
+     * Returns the version this editable copy was made from, or -1 if it
+     * is not an editable copy.  {@link SnapshotRegistry#publish} only
+     * accepts the copy while that version is still the published one.
+     */
+    int getBaseVersion() {
+        return baseVersion == null ? -1 : baseVersion;
+    }
+
+    /** Records the version this copy is now based on, once published. */
+    void setBaseVersion(int baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
     public void addQuestion(Question q) {
+        touch();
         questions.add(q);
     }
 
@@ -42,11 +121,23 @@ public class Survey implements Serializable {
     }
 
     public void display() {
-        System.out.println("Survey: " + name);
+        PrintWriter out = Sinks.console();
+        display(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the survey to the given sink, one cached question rendering
+     * per line.
+     *
+     * @param out destination for the output
+     */
+    public void display(PrintWriter out) {
+        out.println("Survey: " + name);
         for (int i = 0; i < questions.size(); i++) {
-            System.out.print((i + 1) + ") ");
-            questions.get(i).display();
-            System.out.println();
+            out.print(i + 1);
+            out.print(") ");
+            out.println(questions.get(i).getRendered());
         }
     }
 
@@ -64,8 +155,15 @@ public class Survey implements Serializable {
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+        SurveyEvents.Save event = new SurveyEvents.Save();
+        event.begin();
+        try (FileOutputStream stream = new FileOutputStream(file);
+             ObjectOutputStream out = new ObjectOutputStream(stream)) {
             out.writeObject(this);
+            if (event.shouldCommit()) {
+                out.flush();
+                event.commit("Survey", filePath, name, questions.size(), 0, stream.getChannel().position());
+            }
         }
     }
 
@@ -78,14 +176,56 @@ public class Survey implements Serializable {
      * @throws ClassNotFoundException if class resolution fails
      */
     public static Survey loadFromFile(String filePath) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filePath))) {
+        long start = System.nanoTime();
+        SurveyEvents.Load event = new SurveyEvents.Load();
+        event.begin();
+        try (FileInputStream file = new FileInputStream(filePath);
+             ObjectInputStream in = new ObjectInputStream(file)) {
             Object obj = in.readObject();
+            long bytes = file.getChannel().position();
+            Metrics.BYTES_READ.add(bytes);
             if (obj instanceof Survey) {
-                return (Survey) obj;
+                Survey loaded = (Survey) obj;
+                if (event.shouldCommit()) {
+                    event.commit("Survey", filePath, loaded.name, loaded.questions.size(), 0, bytes);
+                }
+                return loaded;
             } else {
                 throw new IOException("File does not contain a Survey object.");
             }
+        } finally {
+            Metrics.SURVEY_LOAD.recordSince(start);
+        }
+    }
+
+    /**
+     * Searches the given directory for a saved survey with the given name,
+     * using the same matching as the interactive "take" menu option: the
+     * file name must contain the name and the loaded survey's name must match
+     * it ignoring case.  Files that cannot be read are skipped.
+     *
+     * @param directory directory holding saved surveys
+     * @param name the survey name to look for
+     * @return the matching survey, or null if none was found
+     */
+    public static Survey findByName(String directory, String name) {
+        File[] files = new File(directory).listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (File f : files) {
+            if (f.isFile() && f.getName().toLowerCase().contains(name.toLowerCase())) {
+                try {
+                    Survey loaded = loadFromFile(f.getPath());
+                    if (loaded.getName().equalsIgnoreCase(name)) {
+                        return loaded;
+                    }
+                } catch (IOException | ClassNotFoundException e) {
+                    // Continue searching other files
+                }
+            }
         }
+        return null;
     }
 
     /**
@@ -98,17 +238,34 @@ public class Survey implements Serializable {
      * @return ResponseSet containing the collected responses
      */
     public ResponseSet takeSurvey(Scanner scanner) {
-        System.out.println("Beginning survey: " + name);
+        return takeSurvey(scanner, null);
+    }
+
+    /**
+     * Conduct the survey on behalf of an identified respondent.
+     *
+     * @param scanner scanner from main program
+     * @param respondentId who is answering, or null if anonymous
+     * @return ResponseSet containing the collected responses
+     */
+    public ResponseSet takeSurvey(Scanner scanner, String respondentId) {
+        PrintWriter out = Sinks.console();
+        out.println("Beginning survey: " + name);
         List<List<String>> responses = new ArrayList<>();
+        int[] millis = new int[questions.size()];
         for (int i = 0; i < questions.size(); i++) {
             Question q = questions.get(i);
-            System.out.println();
-            System.out.print((i + 1) + ") ");
-            q.display();
+            long start = System.nanoTime();
+            out.println();
+            out.print((i + 1) + ") ");
+            q.display(out);
+            // Show the question before blocking on the answer
+            out.flush();
             List<String> answer = q.getUserAnswer(scanner);
             responses.add(answer);
+            millis[i] = AnswerTimes.millisSince(start);
         }
-        return new ResponseSet(name, responses);
+        return new ResponseSet(name, responses, version, millis, respondentId);
     }
 
     /**
@@ -139,10 +296,207 @@ public class Survey implements Serializable {
                 System.out.println("Please enter a valid integer.");
             }
         }
+        touch();
         Question q = questions.get(index - 1);
         q.modify(scanner);
     }
 
+    /**
+     * Tabulate and display the results for this survey using the provided
+     * list of response sets.  For each question, the responses are
+     * aggregated and summarized according to the question type.  Essay
+     * questions simply list the responses.
+     *
+     * @param responseSets list of ResponseSet objects (or other answer
+     *                     accessors) for this survey
+     */
+    public void tabulate(List<? extends AnswerAccessor> responseSets) {
+        PrintWriter out = Sinks.console();
+        tabulate(responseSets, out);
+        out.flush();
+    }
+
+    /**
+     * Tabulates the given response sets and writes the results to the
+     * given sink instead of the console.
+     *
+     * @param responseSets list of ResponseSet objects (or other answer
+     *                     accessors) for this survey
+     * @param out destination for the tabulation
+     */
+    public void tabulate(List<? extends AnswerAccessor> responseSets, PrintWriter out) {
+        long start = System.nanoTime();
+        SurveyEvents.Tabulate event = new SurveyEvents.Tabulate();
+        event.begin();
+        writeTabulation(responseSets, out);
+        Metrics.TABULATE.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(name, questions.size(), responseSets == null ? 0 : responseSets.size(), 0);
+            event.commit();
+        }
+    }
+
+    /**
+     * Tabulates the responses held in a columnar store.  Each question is
+     * summarized from its own column, so only that column's pages are
+     * read and no response set is loaded.
+     *
+     * @param store responses to this survey, e.g. from
+     *              {@link ColumnarResponseStore#sync}
+     * @param out destination for the tabulation
+     * @throws IOException if a column cannot be read
+     */
+    public void tabulate(ColumnarResponseStore store, PrintWriter out) throws IOException {
+        if (store.getColumnCount() != questions.size()) {
+            throw new IllegalArgumentException("Expected " + questions.size() + " columns but got "
+                    + store.getColumnCount());
+        }
+        long start = System.nanoTime();
+        SurveyEvents.Tabulate event = new SurveyEvents.Tabulate();
+        event.begin();
+        if (store.getRowCount() == 0) {
+            out.println("No responses to tabulate for survey '" + name + "'.");
+        } else {
+            out.println("Tabulation of survey: " + name);
+            for (int i = 0; i < questions.size(); i++) {
+                Question q = questions.get(i);
+                out.println();
+                out.print((i + 1) + ") ");
+                q.display(out);
+                ColumnTabulator.summarize(q, store, i, out);
+            }
+        }
+        Metrics.TABULATE.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(name, questions.size(), store.getRowCount(), 0);
+            event.commit();
+        }
+    }
+
+    private void writeTabulation(List<? extends AnswerAccessor> responseSets, PrintWriter out) {
+        if (responseSets == null || responseSets.isEmpty()) {
+            out.println("No responses to tabulate for survey '" + name + "'.");
+            return;
+        }
+        // Tabulate each question
+        out.println("Tabulation of survey: " + name);
+        for (int i = 0; i < questions.size(); i++) {
+            Question q = questions.get(i);
+            out.println();
+            out.print((i + 1) + ") ");
+            q.display(out);
+            AnswerTimes.printSummary(responseSets, i, out);
+            // Collect responses for this question
+            List<List<String>> ansForThis = new ArrayList<>();
+            for (AnswerAccessor rs : responseSets) {
+                if (i < rs.questionCount()) {
+                    ansForThis.add(rs.answers(i));
+                }
+            }
+            // Summarize
+            if (q instanceof TrueFalse || q instanceof MultipleChoice) {
+                Map<String, Integer> counts = new HashMap<>();
+                List<String> options = new ArrayList<>();
+                if (q instanceof TrueFalse) {
+                    options.add("True");
+                    options.add("False");
+                } else {
+                    MultipleChoice mc = (MultipleChoice) q;
+                    int n = mc.getChoices().size();
+                    for (int j = 0; j < n; j++) {
+                        char letter = (char) ('A' + j);
+                        options.add(String.valueOf(letter));
+                    }
+                }
+                for (String opt : options) {
+                    counts.put(opt, 0);
+                }
+                for (List<String> resp : ansForThis) {
+                    for (String ans : resp) {
+                        String normalized;
+                        if (q instanceof TrueFalse) {
+                            String lower = ans.trim().toLowerCase(Locale.ROOT);
+                            if (lower.startsWith("t")) {
+                                normalized = "True";
+                            } else if (lower.startsWith("f")) {
+                                normalized = "False";
+                            } else {
+                                continue;
+                            }
+                        } else {
+                            normalized = ans.trim().toUpperCase(Locale.ROOT);
+                        }
+                        counts.put(normalized, counts.getOrDefault(normalized, 0) + 1);
+                    }
+                }
+                if (q instanceof TrueFalse) {
+                    out.println("True: " + counts.get("True"));
+                    out.println("False: " + counts.get("False"));
+                } else {
+                    for (String opt : options) {
+                        out.println(opt + ": " + counts.get(opt));
+                    }
+                }
+            } else if (q instanceof ShortAnswer || q instanceof DateQuestion) {
+                // Counts spill to disk if the distinct answers exceed the budget
+                try (FrequencyTable counts = new FrequencyTable()) {
+                    for (List<String> resp : ansForThis) {
+                        for (String ans : resp) {
+                            counts.add(ans.trim());
+                        }
+                    }
+                    counts.forEach((key, count) -> out.println(key + " " + count));
+                } catch (IOException e) {
+                    out.println("Error tabulating responses: " + e.getMessage());
+                }
+            } else if (q instanceof Essay) {
+                for (List<String> resp : ansForThis) {
+                    for (String ans : resp) {
+                        out.println(ans);
+                    }
+                }
+            } else if (q instanceof Matching) {
+                Map<String, Integer> comboCounts = new HashMap<>();
+                for (List<String> resp : ansForThis) {
+                    List<String> pairs = new ArrayList<>();
+                    for (String ans : resp) {
+                        pairs.add(ans.trim().toUpperCase(Locale.ROOT));
+                    }
+                    pairs.sort((a, b) -> {
+                        String la = a.split("-")[0];
+                        String lb = b.split("-")[0];
+                        return la.compareTo(lb);
+                    });
+                    String key = String.join("|", pairs);
+                    comboCounts.put(key, comboCounts.getOrDefault(key, 0) + 1);
+                }
+                Matching m = (Matching) q;
+                // display items
+                List<String> left = m.getLeftItems();
+                List<String> right = m.getRightItems();
+                out.println();
+                for (int j = 0; j < left.size(); j++) {
+                    char letter = (char) ('A' + j);
+                    int num = j + 1;
+                    out.printf("%c) %s %d) %s%n", letter, left.get(j), num, right.get(j));
+                }
+                for (Map.Entry<String, Integer> entry : comboCounts.entrySet()) {
+                    int count = entry.getValue();
+                    out.println(count);
+                    String[] pairs = entry.getKey().split("\\|");
+                    for (String p : pairs) {
+                        String[] parts = p.split("-");
+                        if (parts.length == 2) {
+                            out.println(parts[0] + " " + parts[1]);
+                        } else {
+                            out.println(p);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Returns a copy of the questions list.  Used for tabulation when
      * summarizing survey responses.
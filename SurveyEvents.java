@@ -0,0 +1,124 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder events for the persistence and analysis paths.  Each
+ * event records its duration plus the survey or test name, question
+ * count, respondent count and bytes involved, so slow operations in a
+ * recording can be lined up with GC and I/O events.
+ * <p>
+ * Events cost almost nothing while no recording is running: call sites
+ * only fill in fields after {@code shouldCommit()} returns true.  Events
+ * fired per file or per response set only record calls slower than 1 ms
+ * by default; override with e.g. {@code survey.Load#threshold=0 ms} in
+ * a .jfc file or {@code -XX:StartFlightRecording} settings.
+ */
+public final class SurveyEvents {
+    private static final String CATEGORY = "Survey System";
+    /**
+     * Default threshold for events fired once per file or response set,
+     * which would otherwise flood a continuous recording.
+     */
+    private static final String PER_ITEM_THRESHOLD = "1 ms";
+
+    private SurveyEvents() {
+    }
+
+    /** Fields shared by all survey events. */
+    abstract static class SurveyEvent extends Event {
+        @Label("Name")
+        @Description("Survey or test name")
+        String name;
+
+        @Label("Questions")
+        int questionCount;
+
+        @Label("Respondents")
+        int respondentCount;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        void set(String name, int questionCount, int respondentCount, long bytes) {
+            this.name = name;
+            this.questionCount = questionCount;
+            this.respondentCount = respondentCount;
+            this.bytes = bytes;
+        }
+    }
+
+    /** Fields shared by the file events. */
+    abstract static class FileEvent extends SurveyEvent {
+        @Label("Type")
+        @Description("Survey, Test or ResponseSet")
+        String type;
+
+        @Label("Path")
+        String path;
+
+        /**
+         * Fills in the fields and commits.  Call only after
+         * {@code shouldCommit()} returned true.
+         */
+        void commit(String type, String path, String name, int questionCount, int respondentCount,
+                    long bytes) {
+            this.type = type;
+            this.path = path;
+            set(name, questionCount, respondentCount, bytes);
+            commit();
+        }
+    }
+
+    @Name("survey.Load")
+    @Threshold(PER_ITEM_THRESHOLD)
+    @Label("Load From File")
+    @Category(CATEGORY)
+    @Description("A survey, test or response set read with loadFromFile")
+    public static final class Load extends FileEvent {
+    }
+
+    @Name("survey.Save")
+    @Threshold(PER_ITEM_THRESHOLD)
+    @Label("Save To File")
+    @Category(CATEGORY)
+    @Description("A survey, test or response set written with saveToFile")
+    public static final class Save extends FileEvent {
+    }
+
+    @Name("survey.LoadResponseSets")
+    @Label("Load Response Sets")
+    @Category(CATEGORY)
+    @Description("Scan of a response directory for one survey or test")
+    public static final class LoadResponseSets extends SurveyEvent {
+        @Label("Directory")
+        String directory;
+
+        @Label("Files Scanned")
+        int filesScanned;
+
+        @Label("Parse Failures")
+        int parseFailures;
+    }
+
+    @Name("survey.Tabulate")
+    @Label("Tabulate")
+    @Category(CATEGORY)
+    public static final class Tabulate extends SurveyEvent {
+    }
+
+    @Name("survey.CountCorrect")
+    @Threshold(PER_ITEM_THRESHOLD)
+    @Label("Count Correct")
+    @Category(CATEGORY)
+    @Description("Grading of one response set")
+    public static final class CountCorrect extends SurveyEvent {
+        @Label("Correct")
+        int correct;
+    }
+}
\ No newline at end of file
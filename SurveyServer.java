@@ -0,0 +1,324 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP front end for taking surveys and tests.  Unlike the
+ * interactive menus, which read from a single Scanner over System.in,
+ * the server handles each request on its own thread so many respondents
+ * can answer at once.  Surveys and tests are served from read-only
+ * snapshots held in a {@link SnapshotRegistry}, so a new version can be
+ * published while respondents are answering the old one.  On a JDK with
+ * virtual threads one virtual thread is used per request; otherwise a
+ * cached platform thread pool is used.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *   <li>{@code GET /surveys/<name>} or {@code GET /tests/<name>} returns
+ *       the rendered questions as plain text.</li>
+ *   <li>{@code POST /surveys/<name>} or {@code POST /tests/<name>}
+ *       accepts answers, one per line, in the form
+ *       {@code <question number>=<answer>}.  Repeat a question number to
+ *       give several answers.  Answers are checked with
+ *       {@link Question#validateAnswers}.  Valid submissions are saved to the
+ *       responses directory and answered with 201; invalid ones with 400
+ *       and one error per line.  Add {@code ?respondent=<id>} to index
+ *       the submission under a respondent ID, and {@code ?submission=<id>}
+ *       to identify it so a retry is recognised.  A repeated submission
+ *       is answered with 409 when {@link SubmissionFilter} rejects
+ *       duplicates.</li>
+ * </ul>
+ */
+public class SurveyServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String surveyDir;
+    private final String surveyResponseDir;
+    private final String testDir;
+    private final String testResponseDir;
+    private final SnapshotRegistry<Survey> surveys = SnapshotRegistry.forSurveys();
+    private final SnapshotRegistry<Test> tests = SnapshotRegistry.forTests();
+
+    public SurveyServer(int port, String surveyDir, String surveyResponseDir,
+                        String testDir, String testResponseDir) throws IOException {
+        this.surveyDir = surveyDir;
+        this.surveyResponseDir = surveyResponseDir;
+        this.testDir = testDir;
+        this.testResponseDir = testResponseDir;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/surveys/", exchange -> handle(exchange, false));
+        server.createContext("/tests/", exchange -> handle(exchange, true));
+    }
+
+    /**
+     * Returns an executor that runs each request on a new virtual thread
+     * when the running JDK supports it, falling back to a cached thread
+     * pool on older JDKs.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, boolean isTest) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String name = path.substring(path.indexOf('/', 1) + 1);
+            // Each request works against one snapshot even if a new version
+            // is published while it runs
+            List<Question> questions = new ArrayList<>();
+            int version;
+            Test test = null;
+            if (isTest) {
+                test = currentTest(name);
+                if (test == null) {
+                    send(exchange, 404, "Test '" + name + "' not found.\n");
+                    return;
+                }
+                for (TestQuestion tq : test.getQuestions()) {
+                    questions.add(tq.getQuestion());
+                }
+                version = test.getVersion();
+            } else {
+                Survey survey = currentSurvey(name);
+                if (survey == null) {
+                    send(exchange, 404, "Survey '" + name + "' not found.\n");
+                    return;
+                }
+                questions = survey.getQuestions();
+                version = survey.getVersion();
+            }
+            String method = exchange.getRequestMethod();
+            if (method.equals("GET")) {
+                send(exchange, 200, render(questions));
+            } else if (method.equals("POST")) {
+                submit(exchange, name, questions, version, test);
+            } else {
+                send(exchange, 405, "Only GET and POST are supported.\n");
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. the responses directory cannot be written.  A response
+            // already under way, such as a 201 whose body could not be
+            // written, cannot be replaced, so the error is only logged.
+            if (exchange.getResponseCode() < 0) {
+                send(exchange, 500, "Internal error: " + e.getMessage() + "\n");
+            } else {
+                System.err.println("Error after " + exchange.getResponseCode() + " response to "
+                        + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the published snapshot of the named survey, loading and
+     * publishing it on first use with the same lookup as the interactive
+     * "take" menu option.
+     */
+    private Survey currentSurvey(String name) {
+        Survey snapshot = surveys.get(name);
+        if (snapshot == null) {
+            Survey loaded = Survey.findByName(surveyDir, name);
+            if (loaded == null) {
+                return null;
+            }
+            snapshot = publishOrGet(surveys, name, loaded);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the published snapshot of the named test.
+     *
+     * @see #currentSurvey(String)
+     */
+    private Test currentTest(String name) {
+        Test snapshot = tests.get(name);
+        if (snapshot == null) {
+            Test loaded = Test.findByName(testDir, name);
+            if (loaded == null) {
+                return null;
+            }
+            snapshot = publishOrGet(tests, name, loaded);
+        }
+        return snapshot;
+    }
+
+    /** Publishes a freshly loaded instance unless another request beat us to it. */
+    private static <T> T publishOrGet(SnapshotRegistry<T> registry, String name, T loaded) {
+        try {
+            return registry.publish(name, loaded);
+        } catch (IllegalStateException e) {
+            return registry.get(name);
+        }
+    }
+
+    /**
+     * Publishes a new version of a survey.  Respondents that already
+     * fetched the previous version may still submit against it; their
+     * responses are tagged with the version they answered.
+     *
+     * @param survey the edited survey
+     */
+    public void publishSurvey(Survey survey) {
+        surveys.publish(survey.getName(), survey);
+    }
+
+    /**
+     * Publishes a new version of a test.
+     *
+     * @see #publishSurvey(Survey)
+     */
+    public void publishTest(Test test) {
+        tests.publish(test.getName(), test);
+    }
+
+    private static String render(List<Question> questions) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < questions.size(); i++) {
+            sb.append(i + 1).append(") ").append(questions.get(i).getRendered()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Validates and saves one submission.  Test submissions are also
+     * graded onto the test's {@link Leaderboard}.
+     *
+     * @param test the test answered, or null for a survey
+     */
+    private void submit(HttpExchange exchange, String name, List<Question> questions, int version,
+                        Test test) throws IOException {
+        boolean isTest = test != null;
+        List<List<String>> answers = new ArrayList<>();
+        for (int i = 0; i < questions.size(); i++) {
+            answers.add(new ArrayList<>());
+        }
+        List<String> errors = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int eq = line.indexOf('=');
+                int index;
+                try {
+                    index = eq < 0 ? -1 : Integer.parseInt(line.substring(0, eq).trim());
+                } catch (NumberFormatException e) {
+                    index = -1;
+                }
+                if (index < 1 || index > questions.size()) {
+                    errors.add("Malformed line: " + line);
+                    continue;
+                }
+                answers.get(index - 1).add(line.substring(eq + 1));
+            }
+        }
+        for (int i = 0; i < questions.size(); i++) {
+            for (ValidationError error : questions.get(i).validateAnswers(answers.get(i))) {
+                errors.add("Question " + (i + 1) + ": " + error);
+            }
+        }
+        if (!errors.isEmpty()) {
+            send(exchange, 400, String.join("\n", errors) + "\n");
+            return;
+        }
+        for (int i = 0; i < questions.size(); i++) {
+            answers.set(i, questions.get(i).normalizeAnswers(answers.get(i)));
+        }
+        ResponseSet responses = new ResponseSet(name, answers, version, null,
+                queryParameter(exchange, "respondent"), queryParameter(exchange, "submission"));
+        File file;
+        try {
+            file = responses.saveToUniqueFile(isTest ? testResponseDir : surveyResponseDir);
+        } catch (SubmissionFilter.DuplicateException e) {
+            send(exchange, 409, e.getMessage() + "\n");
+            return;
+        }
+        String note = "";
+        if (isTest) {
+            try {
+                Leaderboard.record(new File(testResponseDir), test, responses, file.getName());
+            } catch (IOException e) {
+                note = "Leaderboard not updated: " + e.getMessage() + "\n";
+            }
+        }
+        if (responses.getDuplicateOf() != null) {
+            send(exchange, 201, "Responses saved to " + file.getName() + " as a duplicate of "
+                    + responses.getDuplicateOf() + "\n" + note);
+        } else {
+            send(exchange, 201, "Responses saved to " + file.getName() + "\n" + note);
+        }
+    }
+
+    /**
+     * Returns the decoded value of a query parameter, or null if absent.
+     */
+    private static String queryParameter(HttpExchange exchange, String key) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(key)) {
+                return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Starts the server.  Usage: {@code java SurveyServer [port]}.  The
+     * same data directories as the interactive application are used.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        SurveyServer s = new SurveyServer(port, "../surveys", "../responses", "../tests", "../test_responses");
+        s.start();
+        System.out.println("Survey server listening on port " + s.getPort());
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -24,6 +25,19 @@ public class Test implements Serializable {
     private static final long serialVersionUID = 1L;
     private String name;
     private final List<TestQuestion> questions;
+    /**
+     * Incremented on every change.  Response sets record the version of
+     * the test they answered.  Files saved before versioning existed load
+     * as version 0.
+     */
+    private int version;
+    /** Set on published snapshots, which must not change. */
+    private transient boolean frozen;
+    /**
+     * Version of the snapshot this test was copied from by
+     * {@link #editableCopy()}, or null if it is not an editable copy.
+     */
+    private transient Integer baseVersion;
 
     public Test(String name) {
         this.name = name;
@@ -35,10 +49,72 @@ public class Test implements Serializable {
     }
 
     public void setName(String name) {
+        touch();
         this.name = name;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Checks that this test may be changed and bumps its version.
+     *
+     * @throws IllegalStateException if this is a published snapshot
+     */
+    private void touch() {
+        if (frozen) {
+            throw new IllegalStateException("Published snapshots cannot be modified; edit a copy instead");
+        }
+        version++;
+    }
+
+    /**
+     * Returns a frozen deep copy of this test.  Snapshots are read-only, so
+     * any number of threads may take them concurrently without locking
+     * while an editor works on another copy.
+     *
+     * @return read-only copy carrying the same version
+     */
+    public Test snapshot() {
+        Test copy = SnapshotRegistry.deepCopy(this);
+        copy.frozen = true;
+        for (TestQuestion q : copy.questions) {
+            q.freeze();
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a mutable deep copy of this test, typically of a published
+     * snapshot, for an editor to change and publish as the next version.
+     */
+    public Test editableCopy() {
+        Test copy = SnapshotRegistry.deepCopy(this);
+        copy.baseVersion = version;
+        return copy;
+    }
+
+    /**
+     * Returns the version this editable copy was made from, or -1 if it
+     * is not an editable copy.  {@link SnapshotRegistry#publish} only
+     * accepts the copy while that version is still the published one.
+     */
+    int getBaseVersion() {
+        return baseVersion == null ? -1 : baseVersion;
+    }
+
+    /** Records the version this copy is now based on, once published. */
+    void setBaseVersion(int baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
     public void addQuestion(TestQuestion tq) {
+        touch();
         questions.add(tq);
     }
 
@@ -55,11 +131,23 @@ public class Test implements Serializable {
      * using its underlying Question display() method.
      */
     public void display() {
-        System.out.println("Test: " + name);
+        PrintWriter out = Sinks.console();
+        display(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the test to the given sink, one cached question rendering
+     * per line.
+     *
+     * @param out destination for the output
+     */
+    public void display(PrintWriter out) {
+        out.println("Test: " + name);
         for (int i = 0; i < questions.size(); i++) {
-            System.out.print((i + 1) + ") ");
-            questions.get(i).display();
-            System.out.println();
+            out.print(i + 1);
+            out.print(") ");
+            out.println(questions.get(i).getQuestion().getRendered());
         }
     }
 
@@ -68,12 +156,23 @@ public class Test implements Serializable {
      * reviewing or grading the test.
      */
     public void displayWithAnswers() {
-        System.out.println("Test: " + name);
+        PrintWriter out = Sinks.console();
+        displayWithAnswers(out);
+        out.flush();
+    }
+
+    /**
+     * Writes the test along with correct answers to the given sink.
+     *
+     * @param out destination for the output
+     */
+    public void displayWithAnswers(PrintWriter out) {
+        out.println("Test: " + name);
         for (int i = 0; i < questions.size(); i++) {
-            System.out.print((i + 1) + ") ");
+            out.print((i + 1) + ") ");
             TestQuestion tq = questions.get(i);
-            tq.displayWithAnswer();
-            System.out.println();
+            tq.displayWithAnswer(out);
+            out.println();
         }
     }
 
@@ -91,8 +190,15 @@ public class Test implements Serializable {
         if (parent != null && !parent.exists()) {
             parent.mkdirs();
         }
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
+        SurveyEvents.Save event = new SurveyEvents.Save();
+        event.begin();
+        try (FileOutputStream stream = new FileOutputStream(file);
+             ObjectOutputStream out = new ObjectOutputStream(stream)) {
             out.writeObject(this);
+            if (event.shouldCommit()) {
+                out.flush();
+                event.commit("Test", filePath, name, questions.size(), 0, stream.getChannel().position());
+            }
         }
     }
 
@@ -105,14 +211,56 @@ public class Test implements Serializable {
      * @throws ClassNotFoundException if class resolution fails
      */
     public static Test loadFromFile(String filePath) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(filePath))) {
+        long start = System.nanoTime();
+        SurveyEvents.Load event = new SurveyEvents.Load();
+        event.begin();
+        try (FileInputStream file = new FileInputStream(filePath);
+             ObjectInputStream in = new ObjectInputStream(file)) {
             Object obj = in.readObject();
+            long bytes = file.getChannel().position();
+            Metrics.BYTES_READ.add(bytes);
             if (obj instanceof Test) {
-                return (Test) obj;
+                Test loaded = (Test) obj;
+                if (event.shouldCommit()) {
+                    event.commit("Test", filePath, loaded.name, loaded.questions.size(), 0, bytes);
+                }
+                return loaded;
             } else {
                 throw new IOException("File does not contain a Test object.");
             }
+        } finally {
+            Metrics.TEST_LOAD.recordSince(start);
+        }
+    }
+
+    /**
+     * Searches the given directory for a saved test with the given name,
+     * using the same matching as the interactive "take" menu option: the
+     * file name must contain the name and the loaded test's name must match
+     * it ignoring case.  Files that cannot be read are skipped.
+     *
+     * @param directory directory holding saved tests
+     * @param name the test name to look for
+     * @return the matching test, or null if none was found
+     */
+    public static Test findByName(String directory, String name) {
+        File[] files = new File(directory).listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (File f : files) {
+            if (f.isFile() && f.getName().toLowerCase().contains(name.toLowerCase())) {
+                try {
+                    Test loaded = loadFromFile(f.getPath());
+                    if (loaded.getName().equalsIgnoreCase(name)) {
+                        return loaded;
+                    }
+                } catch (IOException | ClassNotFoundException e) {
+                    // Continue searching other files
+                }
+            }
         }
+        return null;
     }
 
     /**
@@ -125,18 +273,35 @@ public class Test implements Serializable {
      * @return ResponseSet containing the collected responses
      */
     public ResponseSet takeTest(Scanner scanner) {
-        System.out.println("Beginning test: " + name);
+        return takeTest(scanner, null);
+    }
+
+    /**
+     * Conduct the test on behalf of an identified respondent.
+     *
+     * @param scanner scanner from main program
+     * @param respondentId who is answering, or null if anonymous
+     * @return ResponseSet containing the collected responses
+     */
+    public ResponseSet takeTest(Scanner scanner, String respondentId) {
+        PrintWriter out = Sinks.console();
+        out.println("Beginning test: " + name);
         List<List<String>> responses = new ArrayList<>();
+        int[] millis = new int[questions.size()];
         for (int i = 0; i < questions.size(); i++) {
             TestQuestion tq = questions.get(i);
             Question q = tq.getQuestion();
-            System.out.println();
-            System.out.print((i + 1) + ") ");
-            q.display();
+            long start = System.nanoTime();
+            out.println();
+            out.print((i + 1) + ") ");
+            q.display(out);
+            // Show the question before blocking on the answer
+            out.flush();
             List<String> answer = q.getUserAnswer(scanner);
             responses.add(answer);
+            millis[i] = AnswerTimes.millisSince(start);
         }
-        return new ResponseSet(name, responses);
+        return new ResponseSet(name, responses, version, millis, respondentId);
     }
 
     /**
@@ -169,6 +334,7 @@ public class Test implements Serializable {
                 System.out.println("Please enter a valid integer.");
             }
         }
+        touch();
         TestQuestion tq = questions.get(index - 1);
         // modify underlying question prompt/choices/allowed responses
         tq.getQuestion().modify(scanner);
@@ -185,17 +351,25 @@ public class Test implements Serializable {
      * @param responseSet the user's responses
      * @return the number of correct answers to auto‑gradable questions
      */
-    public int countCorrect(ResponseSet responseSet) {
-        List<List<String>> answers = responseSet.getResponses();
+    public int countCorrect(AnswerAccessor responseSet) {
+        long start = System.nanoTime();
+        SurveyEvents.CountCorrect event = new SurveyEvents.CountCorrect();
+        event.begin();
         int correct = 0;
-        for (int i = 0; i < questions.size() && i < answers.size(); i++) {
+        for (int i = 0; i < questions.size() && i < responseSet.questionCount(); i++) {
             TestQuestion tq = questions.get(i);
             if (!tq.isEssay()) {
-                if (tq.isCorrect(answers.get(i))) {
+                if (tq.isCorrect(responseSet.answers(i))) {
                     correct++;
                 }
             }
         }
+        Metrics.GRADE.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(name, questions.size(), 1, 0);
+            event.correct = correct;
+            event.commit();
+        }
         return correct;
     }
 
@@ -205,26 +379,90 @@ public class Test implements Serializable {
      * aggregated and summarized according to the question type.  Essay
      * questions simply list the responses.
      *
-     * @param responseSets list of ResponseSet objects for this test
+     * @param responseSets list of ResponseSet objects (or other answer
+     *                     accessors) for this test
      */
-    public void tabulate(List<ResponseSet> responseSets) {
+    public void tabulate(List<? extends AnswerAccessor> responseSets) {
+        PrintWriter out = Sinks.console();
+        tabulate(responseSets, out);
+        out.flush();
+    }
+
+    /**
+     * Tabulates the given response sets and writes the results to the
+     * given sink instead of the console.
+     *
+     * @param responseSets list of ResponseSet objects (or other answer
+     *                     accessors) for this test
+     * @param out destination for the tabulation
+     */
+    public void tabulate(List<? extends AnswerAccessor> responseSets, PrintWriter out) {
+        long start = System.nanoTime();
+        SurveyEvents.Tabulate event = new SurveyEvents.Tabulate();
+        event.begin();
+        writeTabulation(responseSets, out);
+        Metrics.TABULATE.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(name, questions.size(), responseSets == null ? 0 : responseSets.size(), 0);
+            event.commit();
+        }
+    }
+
+    /**
+     * Tabulates the responses held in a columnar store.  Each question is
+     * summarized from its own column, so only that column's pages are
+     * read and no response set is loaded.
+     *
+     * @param store responses to this test, e.g. from
+     *              {@link ColumnarResponseStore#sync}
+     * @param out destination for the tabulation
+     * @throws IOException if a column cannot be read
+     */
+    public void tabulate(ColumnarResponseStore store, PrintWriter out) throws IOException {
+        if (store.getColumnCount() != questions.size()) {
+            throw new IllegalArgumentException("Expected " + questions.size() + " columns but got "
+                    + store.getColumnCount());
+        }
+        long start = System.nanoTime();
+        SurveyEvents.Tabulate event = new SurveyEvents.Tabulate();
+        event.begin();
+        if (store.getRowCount() == 0) {
+            out.println("No responses to tabulate for test '" + name + "'.");
+        } else {
+            out.println("Tabulation of test: " + name);
+            for (int i = 0; i < questions.size(); i++) {
+                Question q = questions.get(i).getQuestion();
+                out.println();
+                out.print((i + 1) + ") ");
+                q.display(out);
+                ColumnTabulator.summarize(q, store, i, out);
+            }
+        }
+        Metrics.TABULATE.recordSince(start);
+        if (event.shouldCommit()) {
+            event.set(name, questions.size(), store.getRowCount(), 0);
+            event.commit();
+        }
+    }
+
+    private void writeTabulation(List<? extends AnswerAccessor> responseSets, PrintWriter out) {
         if (responseSets == null || responseSets.isEmpty()) {
-            System.out.println("No responses to tabulate for test '" + name + "'.");
+            out.println("No responses to tabulate for test '" + name + "'.");
             return;
         }
-        System.out.println("Tabulation of test: " + name);
+        out.println("Tabulation of test: " + name);
         for (int i = 0; i < questions.size(); i++) {
             TestQuestion tq = questions.get(i);
             Question q = tq.getQuestion();
-            System.out.println();
-            System.out.print((i + 1) + ") ");
-            q.display();
+            out.println();
+            out.print((i + 1) + ") ");
+            q.display(out);
+            AnswerTimes.printSummary(responseSets, i, out);
             // Collect all answers for this question
             List<List<String>> ansForThis = new ArrayList<>();
-            for (ResponseSet rs : responseSets) {
-                List<List<String>> ansList = rs.getResponses();
-                if (i < ansList.size()) {
-                    ansForThis.add(ansList.get(i));
+            for (AnswerAccessor rs : responseSets) {
+                if (i < rs.questionCount()) {
+                    ansForThis.add(rs.answers(i));
                 }
             }
             // Tabulate by type
@@ -269,30 +507,31 @@ public class Test implements Serializable {
                 }
                 // Display counts
                 if (q instanceof TrueFalse) {
-                    System.out.println("True: " + counts.get("True"));
-                    System.out.println("False: " + counts.get("False"));
+                    out.println("True: " + counts.get("True"));
+                    out.println("False: " + counts.get("False"));
                 } else {
                     for (String opt : options) {
-                        System.out.println(opt + ": " + counts.get(opt));
+                        out.println(opt + ": " + counts.get(opt));
                     }
                 }
             } else if (q instanceof ShortAnswer || q instanceof DateQuestion) {
-                Map<String, Integer> counts = new HashMap<>();
-                for (List<String> resp : ansForThis) {
-                    for (String ans : resp) {
-                        String key = ans.trim();
-                        counts.put(key, counts.getOrDefault(key, 0) + 1);
+                // Counts spill to disk if the distinct answers exceed the budget
+                try (FrequencyTable counts = new FrequencyTable()) {
+                    for (List<String> resp : ansForThis) {
+                        for (String ans : resp) {
+                            counts.add(ans.trim());
+                        }
                     }
-                }
-                // Display each unique answer and its count
-                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
-                    System.out.println(entry.getKey() + " " + entry.getValue());
+                    // Display each unique answer and its count
+                    counts.forEach((key, count) -> out.println(key + " " + count));
+                } catch (IOException e) {
+                    out.println("Error tabulating responses: " + e.getMessage());
                 }
             } else if (q instanceof Essay) {
                 // List all essay responses verbatim
                 for (List<String> resp : ansForThis) {
                     for (String ans : resp) {
-                        System.out.println(ans);
+                        out.println(ans);
                     }
                 }
             } else if (q instanceof Matching) {
@@ -316,27 +555,27 @@ public class Test implements Serializable {
                 // Display results.  Show original matching choices for clarity
                 Matching m = (Matching) q;
                 // Show left and right items
-                System.out.println();
+                out.println();
                 List<String> left = m.getLeftItems();
                 List<String> right = m.getRightItems();
                 for (int j = 0; j < left.size(); j++) {
                     char letter = (char) ('A' + j);
                     int num = j + 1;
-                    System.out.printf("%c) %s %d) %s%n", letter, left.get(j), num, right.get(j));
+                    out.printf("%c) %s %d) %s%n", letter, left.get(j), num, right.get(j));
                 }
                 // Print each unique permutation with count
                 for (Map.Entry<String, Integer> entry : comboCounts.entrySet()) {
                     int count = entry.getValue();
                     String key = entry.getKey();
-                    System.out.println(count);
+                    out.println(count);
                     String[] pairs = key.split("\\|");
                     // Display each mapping on its own line
                     for (String p : pairs) {
                         String[] parts = p.split("-");
                         if (parts.length == 2) {
-                            System.out.println(parts[0] + " " + parts[1]);
+                            out.println(parts[0] + " " + parts[1]);
                         } else {
-                            System.out.println(p);
+                            out.println(p);
                         }
                     }
                 }
@@ -1,3 +1,4 @@
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -23,6 +24,15 @@ public class TestQuestion implements Serializable {
     private static final long serialVersionUID = 1L;
     private Question question;
     private List<String> correctAnswers;
+    /**
+     * Typos accepted in each short answer; 0 requires an exact match.
+     * See {@link FuzzyMatcher}.
+     */
+    private int maxEdits;
+    /** Correct answers compiled for fuzzy matching, built on first use. */
+    private transient FuzzyMatcher matcher;
+    /** Set on questions belonging to a published snapshot. */
+    private transient boolean frozen;
 
     public TestQuestion(Question question, List<String> correctAnswers) {
         this.question = question;
@@ -43,11 +53,52 @@ public class TestQuestion implements Serializable {
     }
 
     public void setCorrectAnswers(List<String> answers) {
+        checkMutable();
         if (answers == null) {
             this.correctAnswers = null;
         } else {
             this.correctAnswers = new ArrayList<>(answers);
         }
+        matcher = null;
+    }
+
+    /**
+     * Returns the number of typos accepted in each answer to a short
+     * answer question; 0 means answers must match exactly.
+     */
+    public int getMaxEdits() {
+        return maxEdits;
+    }
+
+    /**
+     * Sets the number of typos (inserted, deleted or replaced characters)
+     * accepted in each answer to a short answer question.  Short correct
+     * answers accept fewer; see {@link FuzzyMatcher}.
+     *
+     * @param maxEdits typos accepted, 0 for exact matching
+     */
+    public void setMaxEdits(int maxEdits) {
+        checkMutable();
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("Number of typos must not be negative");
+        }
+        this.maxEdits = maxEdits;
+        matcher = null;
+    }
+
+    /**
+     * Marks this question and its underlying Question as part of a
+     * published snapshot.
+     */
+    void freeze() {
+        frozen = true;
+        question.freeze();
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Question belongs to a published snapshot and cannot be modified");
+        }
     }
 
     /**
@@ -96,6 +147,9 @@ public class TestQuestion implements Serializable {
             }
             return userSet.equals(correctSet);
         } else if (question instanceof ShortAnswer) {
+            if (maxEdits > 0) {
+                return isFuzzyMatch(userAnswers);
+            }
             // Compare sets of responses case‑insensitively
             Set<String> userSet = new HashSet<>();
             for (String ans : userAnswers) {
@@ -137,6 +191,20 @@ public class TestQuestion implements Serializable {
         return false;
     }
 
+    /**
+     * Compares short answers allowing typos.  As with the exact
+     * comparison, every answer must match a correct answer and every
+     * correct answer must be matched, pairing answers one to one.
+     */
+    private boolean isFuzzyMatch(List<String> userAnswers) {
+        FuzzyMatcher m = matcher;
+        if (m == null) {
+            m = FuzzyMatcher.compile(correctAnswers, maxEdits);
+            matcher = m;
+        }
+        return m.matchesSet(userAnswers);
+    }
+
     /**
      * Displays this question including its prompt and any associated
      * choices.  Delegates to the underlying Question display().
@@ -151,15 +219,26 @@ public class TestQuestion implements Serializable {
      * a correct answer.
      */
     public void displayWithAnswer() {
-        question.display();
+        PrintWriter out = Sinks.console();
+        displayWithAnswer(out);
+        out.flush();
+    }
+
+    /**
+     * Writes this question and its correct answer(s) to the given sink.
+     *
+     * @param out destination for the output
+     */
+    public void displayWithAnswer(PrintWriter out) {
+        question.display(out);
         if (isEssay() || correctAnswers == null) {
-            System.out.println("(No automatic grading for this question)");
+            out.println("(No automatic grading for this question)");
             return;
         }
         if (question instanceof TrueFalse) {
             String ans = correctAnswers.get(0).trim().toLowerCase(Locale.ROOT);
             String letter = ans.startsWith("t") ? "T" : "F";
-            System.out.println("The correct answer is " + letter);
+            out.println("The correct answer is " + letter);
         } else if (question instanceof MultipleChoice) {
             MultipleChoice mc = (MultipleChoice) question;
             List<String> choices = mc.getChoices();
@@ -180,41 +259,44 @@ public class TestQuestion implements Serializable {
                 }
             }
             if (parts.size() == 1) {
-                System.out.println("The correct choice is " + parts.get(0));
+                out.println("The correct choice is " + parts.get(0));
             } else {
-                System.out.print("The correct choices are ");
+                out.print("The correct choices are ");
                 for (int i = 0; i < parts.size(); i++) {
-                    System.out.print(parts.get(i));
+                    out.print(parts.get(i));
                     if (i < parts.size() - 1) {
-                        System.out.print(", ");
+                        out.print(", ");
                     }
                 }
-                System.out.println();
+                out.println();
             }
         } else if (question instanceof ShortAnswer) {
             if (correctAnswers.size() == 1) {
-                System.out.println("The correct answer is " + correctAnswers.get(0));
+                out.println("The correct answer is " + correctAnswers.get(0));
             } else {
-                System.out.print("The correct answers are ");
+                out.print("The correct answers are ");
                 for (int i = 0; i < correctAnswers.size(); i++) {
-                    System.out.print(correctAnswers.get(i));
+                    out.print(correctAnswers.get(i));
                     if (i < correctAnswers.size() - 1) {
-                        System.out.print(", ");
+                        out.print(", ");
                     }
                 }
-                System.out.println();
+                out.println();
+            }
+            if (maxEdits > 0) {
+                out.println("(Up to " + maxEdits + (maxEdits == 1 ? " typo" : " typos") + " accepted per answer)");
             }
         } else if (question instanceof DateQuestion) {
-            System.out.println("The correct answer is " + correctAnswers.get(0));
+            out.println("The correct answer is " + correctAnswers.get(0));
         } else if (question instanceof Matching) {
             // For matching, display each mapping nicely
-            System.out.println("The correct matches are:");
+            out.println("The correct matches are:");
             for (String ans : correctAnswers) {
                 String[] parts = ans.split("-");
                 if (parts.length == 2) {
-                    System.out.println(parts[0].toUpperCase(Locale.ROOT) + " -> " + parts[1]);
+                    out.println(parts[0].toUpperCase(Locale.ROOT) + " -> " + parts[1]);
                 } else {
-                    System.out.println(ans);
+                    out.println(ans);
                 }
             }
         }
@@ -230,6 +312,7 @@ public class TestQuestion implements Serializable {
      * @param scanner scanner for user input
      */
     public void modifyCorrectAnswers(Scanner scanner) {
+        checkMutable();
         if (isEssay()) {
             // Essay questions are not auto-graded; nothing to modify
             return;
@@ -291,6 +374,7 @@ public class TestQuestion implements Serializable {
                 newCorrect.add(ans);
             }
             setCorrectAnswers(newCorrect);
+            setMaxEdits(promptMaxEdits(scanner));
         } else if (question instanceof DateQuestion) {
             DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
             while (true) {
@@ -332,4 +416,30 @@ public class TestQuestion implements Serializable {
             setCorrectAnswers(newCorrect);
         }
     }
+
+    /**
+     * Asks how many typos to accept in short answers.
+     *
+     * @param scanner scanner for user input
+     * @return the number of typos, 0 for exact matching
+     */
+    static int promptMaxEdits(Scanner scanner) {
+        while (true) {
+            System.out.print("Enter the number of typos to accept per answer (0 for an exact match): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return 0;
+            }
+            try {
+                int n = Integer.parseInt(input);
+                if (n < 0) {
+                    System.out.println("Number must not be negative.");
+                    continue;
+                }
+                return n;
+            } catch (NumberFormatException e) {
+                System.out.println("Please enter a valid integer.");
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -16,9 +16,9 @@ public class TrueFalse extends Question {
     }
 
     @Override
-    public void display() {
-        System.out.println(getPrompt());
-        System.out.println("(T/F)");
+    protected void render(StringBuilder sb) {
+        sb.append(getPrompt()).append(NEWLINE);
+        sb.append("(T/F)").append(NEWLINE);
     }
 
     @Override
@@ -26,12 +26,9 @@ public class TrueFalse extends Question {
         List<String> answers = new ArrayList<>();
         while (true) {
             System.out.print("Enter T for True or F for False: ");
-            String input = scanner.nextLine().trim().toLowerCase(Locale.ROOT);
-            if (input.equals("t") || input.equals("true")) {
-                answers.add("True");
-                break;
-            } else if (input.equals("f") || input.equals("false")) {
-                answers.add("False");
+            String normalized = normalize(scanner.nextLine());
+            if (normalized != null) {
+                answers.add(normalized);
                 break;
             } else {
                 System.out.println("Invalid input. Please enter 'T' or 'F'.");
@@ -40,8 +37,46 @@ public class TrueFalse extends Question {
         return answers;
     }
 
+    /**
+     * Maps "t"/"true"/"f"/"false" (any case) to "True" or "False".
+     *
+     * @return the stored form, or null if the input is not recognised
+     */
+    private static String normalize(String input) {
+        String lower = input.trim().toLowerCase(Locale.ROOT);
+        if (lower.equals("t") || lower.equals("true")) {
+            return "True";
+        } else if (lower.equals("f") || lower.equals("false")) {
+            return "False";
+        }
+        return null;
+    }
+
+    @Override
+    public List<ValidationError> validateAnswers(List<String> answers) {
+        List<ValidationError> errors = super.validateAnswers(answers);
+        if (answers != null) {
+            for (int k = 0; k < answers.size(); k++) {
+                if (answers.get(k) == null || normalize(answers.get(k)) == null) {
+                    errors.add(new ValidationError(k, "Invalid input. Please enter 'T' or 'F'."));
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public List<String> normalizeAnswers(List<String> answers) {
+        List<String> result = new ArrayList<>(answers.size());
+        for (String ans : answers) {
+            result.add(normalize(ans));
+        }
+        return result;
+    }
+
     @Override
     public void modify(Scanner scanner) {
+        checkMutable();
         System.out.println("Current prompt: " + getPrompt());
         System.out.print("Do you wish to modify the prompt? (Y/N): ");
         String response = scanner.nextLine().trim().toLowerCase();
@@ -0,0 +1,35 @@
+/**
+ * Describes a single problem found when validating a candidate answer
+ * list against a question.  Produced by
+ * {@link Question#validateAnswers(java.util.List)}.
+ */
+public class ValidationError {
+    private final int answerIndex;
+    private final String message;
+
+    /**
+     * @param answerIndex zero based index of the offending answer, or -1
+     *                    if the error concerns the answer list as a whole
+     * @param message human readable description of the problem
+     */
+    public ValidationError(int answerIndex, String message) {
+        this.answerIndex = answerIndex;
+        this.message = message;
+    }
+
+    public int getAnswerIndex() {
+        return answerIndex;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        if (answerIndex < 0) {
+            return message;
+        }
+        return "Answer " + (answerIndex + 1) + ": " + message;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import surveybench.Workload;
+
+/**
+ * Default package implementation of {@link Workload}.  Uses
+ * {@link FixtureGenerator} to build a test of ten questions of a single
+ * type and response sets in which roughly half of the answers are
+ * correct.
+ */
+public class SurveyWorkload implements Workload {
+    private static final int QUESTIONS = 10;
+    private static final String NAME = "Bench";
+
+    private File workDir;
+    private Test test;
+    private Survey survey;
+    private List<ResponseSet> responseSets;
+    private File surveyFile;
+    private File responseDir;
+    private byte[] serializedResponseSet;
+    private PrintWriter nullSink;
+
+    @Override
+    public void setUp(String questionType, int respondents, File workDir, boolean writeResponseFiles)
+            throws Exception {
+        this.workDir = workDir;
+        FixtureGenerator generator = new FixtureGenerator(42);
+        generator.setCorrectRate(0.5);
+        generator.setMix(FixtureGenerator.parseMix(questionType));
+        test = generator.generateTest(NAME, QUESTIONS);
+        survey = new Survey(NAME);
+        for (TestQuestion tq : test.getQuestions()) {
+            survey.addQuestion(tq.getQuestion());
+        }
+        Random random = new Random(42);
+        responseSets = new ArrayList<>(respondents);
+        for (int r = 0; r < respondents; r++) {
+            responseSets.add(new ResponseSet(NAME, generator.answerSheet(test.getQuestions(), random)));
+        }
+        surveyFile = new File(workDir, "bench.ser");
+        survey.saveToFile(surveyFile.getPath());
+        serializedResponseSet = serializeResponseSet();
+        responseDir = new File(workDir, "responses");
+        if (writeResponseFiles) {
+            for (ResponseSet rs : responseSets) {
+                rs.saveToUniqueFile(responseDir.getPath());
+            }
+        }
+        nullSink = new PrintWriter(OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public void tearDown() {
+        deleteRecursively(workDir);
+    }
+
+    private static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) {
+                deleteRecursively(c);
+            }
+        }
+        f.delete();
+    }
+
+    @Override
+    public void saveSurvey() throws IOException {
+        survey.saveToFile(new File(workDir, "save.ser").getPath());
+    }
+
+    @Override
+    public Object loadSurvey() throws Exception {
+        return Survey.loadFromFile(surveyFile.getPath());
+    }
+
+    @Override
+    public byte[] serializeResponseSet() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(responseSets.get(0));
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object deserializeResponseSet() throws Exception {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serializedResponseSet))) {
+            return in.readObject();
+        }
+    }
+
+    @Override
+    public int loadResponseSets() {
+        return Main.loadResponseSets(NAME, responseDir.getPath()).size();
+    }
+
+    @Override
+    public void tabulate() {
+        test.tabulate(responseSets, nullSink);
+        nullSink.flush();
+    }
+
+    @Override
+    public boolean isCorrect(int respondent) {
+        return test.getQuestions().get(0).isCorrect(responseSets.get(respondent).answers(0));
+    }
+
+    @Override
+    public int countCorrectAll() {
+        int total = 0;
+        for (ResponseSet rs : responseSets) {
+            total += test.countCorrect(rs);
+        }
+        return total;
+    }
+}
\ No newline at end of file
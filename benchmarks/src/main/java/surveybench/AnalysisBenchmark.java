@@ -0,0 +1,37 @@
+package surveybench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tabulation and grading over in-memory response sets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Benchmark
+    public void tabulate(WorkloadState state) {
+        state.workload.tabulate();
+    }
+
+    @Benchmark
+    public boolean isCorrect(WorkloadState state) {
+        return state.workload.isCorrect(0);
+    }
+
+    @Benchmark
+    public int countCorrect(WorkloadState state) {
+        return state.workload.countCorrectAll();
+    }
+}
\ No newline at end of file
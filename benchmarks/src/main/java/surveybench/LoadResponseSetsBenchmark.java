@@ -0,0 +1,36 @@
+package surveybench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Main.loadResponseSets over a directory holding one file per
+ * respondent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class LoadResponseSetsBenchmark {
+
+    /** Same fixture as {@link WorkloadState}, with response files on disk. */
+    public static class FilesState extends WorkloadState {
+        @Override
+        protected boolean writeResponseFiles() {
+            return true;
+        }
+    }
+
+    @Benchmark
+    public int loadResponseSets(FilesState state) {
+        return state.workload.loadResponseSets();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package surveybench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Survey.saveToFile / loadFromFile and ResponseSet serialization.  The
+ * respondent count does not affect these, so only the question type
+ * varies in practice.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Benchmark
+    public void saveSurvey(WorkloadState state) throws Exception {
+        state.workload.saveSurvey();
+    }
+
+    @Benchmark
+    public Object loadSurvey(WorkloadState state) throws Exception {
+        return state.workload.loadSurvey();
+    }
+
+    @Benchmark
+    public byte[] serializeResponseSet(WorkloadState state) throws Exception {
+        return state.workload.serializeResponseSet();
+    }
+
+    @Benchmark
+    public Object deserializeResponseSet(WorkloadState state) throws Exception {
+        return state.workload.deserializeResponseSet();
+    }
+}
\ No newline at end of file
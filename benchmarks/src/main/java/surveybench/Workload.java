@@ -0,0 +1,65 @@
+package surveybench;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Operations measured by the benchmarks.  The application classes live
+ * in the default package, which code in a named package cannot refer to,
+ * and JMH requires benchmarks to be in a named package.  The benchmarks
+ * therefore drive the application through this interface, implemented
+ * by {@code SurveyWorkload} in the default package and loaded
+ * reflectively by {@link #create()}.
+ */
+public interface Workload {
+
+    /**
+     * Builds a test made of questions of one type plus synthetic
+     * response sets for it.
+     *
+     * @param questionType simple class name of the question type, e.g. "TrueFalse"
+     * @param respondents number of response sets to generate
+     * @param workDir scratch directory for files
+     * @param writeResponseFiles whether to also save each response set to
+     *                           its own file for loadResponseSets
+     */
+    void setUp(String questionType, int respondents, File workDir, boolean writeResponseFiles) throws Exception;
+
+    /** Deletes the scratch directory. */
+    void tearDown();
+
+    /** Survey.saveToFile of a survey with the same questions. */
+    void saveSurvey() throws IOException;
+
+    /** Survey.loadFromFile of the file written by setUp. */
+    Object loadSurvey() throws Exception;
+
+    /** Serializes one ResponseSet to a byte array. */
+    byte[] serializeResponseSet() throws IOException;
+
+    /** Deserializes the bytes produced by serializeResponseSet. */
+    Object deserializeResponseSet() throws Exception;
+
+    /** Main.loadResponseSets over the generated response directory. */
+    int loadResponseSets();
+
+    /** Test.tabulate over all response sets, written to a null sink. */
+    void tabulate();
+
+    /** TestQuestion.isCorrect for one respondent's answer to the first question. */
+    boolean isCorrect(int respondent);
+
+    /** Test.countCorrect summed over all response sets. */
+    int countCorrectAll();
+
+    /**
+     * Loads the default package implementation.
+     */
+    static Workload create() {
+        try {
+            return (Workload) Class.forName("SurveyWorkload").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("SurveyWorkload is not on the class path", e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+package surveybench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared fixture: a test of one question type and its synthetic
+ * response sets.  Subclasses decide whether response files are written
+ * to disk.
+ */
+@State(Scope.Benchmark)
+public class WorkloadState {
+    @Param({"TrueFalse", "MultipleChoice", "ShortAnswer", "Essay", "DateQuestion", "Matching"})
+    public String questionType;
+
+    @Param({"1000", "100000"})
+    public int respondents;
+
+    public Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("surveybench").toFile();
+        workload = Workload.create();
+        workload.setUp(questionType, respondents, dir, writeResponseFiles());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workload.tearDown();
+    }
+
+    protected boolean writeResponseFiles() {
+        return false;
+    }
+}
\ No newline at end of file
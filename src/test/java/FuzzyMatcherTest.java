@@ -0,0 +1,173 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the trie search and the answer set pairing against computing
+ * the edit distance to every accepted answer.
+ */
+class FuzzyMatcherTest {
+    private static final String ALPHABET = "abch";
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        for (int t = 0; t < 20_000; t++) {
+            int maxEdits = 1 + random.nextInt(2);
+            // Short strings over a small alphabet, so answers are often
+            // empty, equal or within a few edits of each other
+            List<String> accepted = new ArrayList<>();
+            int k = 1 + random.nextInt(4);
+            for (int i = 0; i < k; i++) {
+                accepted.add(randomString(random, random.nextInt(8)));
+            }
+            List<String> answers = new ArrayList<>();
+            for (String a : accepted) {
+                answers.add(mutate(random, a));
+            }
+            if (random.nextInt(5) == 0) {
+                answers.add(mutate(random, accepted.get(0)));
+            }
+            Collections.shuffle(answers, random);
+
+            FuzzyMatcher matcher = FuzzyMatcher.compile(accepted, maxEdits);
+            List<String> distinct = normalized(accepted);
+            assertEquals(distinct.size(), matcher.size());
+            for (String answer : answers) {
+                String s = normalize(answer);
+                List<Integer> all = new ArrayList<>();
+                int best = -1;
+                int bestDistance = Integer.MAX_VALUE;
+                for (int i = 0; i < distinct.size(); i++) {
+                    int d = distance(s, distinct.get(i));
+                    if (d <= budget(distinct.get(i), maxEdits)) {
+                        all.add(i);
+                        if (d < bestDistance) {
+                            bestDistance = d;
+                            best = i;
+                        }
+                    }
+                }
+                String context = accepted + " " + maxEdits + " '" + answer + "'";
+                assertEquals(best, matcher.match(answer), context);
+                assertArrayEquals(all.stream().mapToInt(Integer::intValue).toArray(), matcher.matchAll(answer), context);
+            }
+            assertEquals(pairs(distinct, normalized(answers), maxEdits), matcher.matchesSet(answers),
+                    accepted + " " + maxEdits + " " + answers);
+        }
+    }
+
+    @Test
+    void matchesEmptyAcceptedAnswer() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(List.of("", "abcdef"), 1);
+        assertEquals(0, matcher.match(""));
+        assertEquals(0, matcher.match("  "));
+        assertArrayEquals(new int[] {0}, matcher.matchAll(""));
+        assertArrayEquals(new int[] {1}, matcher.matchAll("abcdex"));
+        assertArrayEquals(new int[0], matcher.matchAll("x"));
+        assertTrue(matcher.matchesSet(List.of(" ", "ABCDEX")));
+        assertFalse(matcher.matchesSet(List.of("x", "abcdef")));
+    }
+
+    @Test
+    void pairsAnswersOneToOne() {
+        FuzzyMatcher matcher = FuzzyMatcher.compile(List.of("cat", "bat"), 1);
+        assertTrue(matcher.matchesSet(List.of("cat", "hat")));
+        assertFalse(matcher.matchesSet(List.of("cat", "cat")));
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> normalized(List<String> answers) {
+        LinkedHashSet<String> distinct = new LinkedHashSet<>();
+        for (String a : answers) {
+            distinct.add(normalize(a));
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    private static int budget(String accepted, int maxEdits) {
+        return Math.min(maxEdits, accepted.length() / 3);
+    }
+
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int replace = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                d[i][j] = Math.min(replace, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    /** Tries every pairing of answers with accepted answers. */
+    private static boolean pairs(List<String> accepted, List<String> answers, int maxEdits) {
+        return accepted.size() == answers.size() && pairs(accepted, answers, 0, new boolean[accepted.size()], maxEdits);
+    }
+
+    private static boolean pairs(List<String> accepted, List<String> answers, int i, boolean[] used, int maxEdits) {
+        if (i == answers.size()) {
+            return true;
+        }
+        for (int k = 0; k < accepted.size(); k++) {
+            if (!used[k] && distance(answers.get(i), accepted.get(k)) <= budget(accepted.get(k), maxEdits)) {
+                used[k] = true;
+                if (pairs(accepted, answers, i + 1, used, maxEdits)) {
+                    return true;
+                }
+                used[k] = false;
+            }
+        }
+        return false;
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /** Applies up to two random edits, and sometimes changes case or pads. */
+    private static String mutate(Random random, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        int edits = random.nextInt(3);
+        for (int i = 0; i < edits; i++) {
+            int op = random.nextInt(3);
+            int p = sb.length() == 0 ? 0 : random.nextInt(sb.length());
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            if (op == 0 && sb.length() > 0) {
+                sb.setCharAt(p, c);
+            } else if (op == 1) {
+                sb.insert(p, c);
+            } else if (sb.length() > 0) {
+                sb.deleteCharAt(p);
+            }
+        }
+        String result = sb.toString();
+        if (random.nextInt(4) == 0) {
+            result = " " + result.toUpperCase(Locale.ROOT);
+        }
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the persisted correctness bits against grading the loaded
+ * response sets one by one, after a build, an append and a regrade.
+ */
+class GradeMatrixTest {
+    private static final String[] ANSWERS = {
+        "t", "T", " true ", "False", "f", "tru", "yes", "", "A", "b", " c ", "AB", "1", "z", "B"
+    };
+
+    @TempDir
+    Path tmp;
+
+    private final Random random = new Random(7);
+
+    // Qualified, as the default package has its own Test
+    @org.junit.jupiter.api.Test
+    void popcountsAndScoresMatchCountCorrect() throws Exception {
+        File dir = tmp.toFile();
+        TestQuestion tf = new TestQuestion(new TrueFalse("tf"), List.of("True"));
+        TestQuestion mc = new TestQuestion(new MultipleChoice("mc", List.of("x", "y", "z")), List.of("b", "C"));
+        TestQuestion sa = new TestQuestion(new ShortAnswer("sa"), List.of("yes"));
+        Test test = new Test("Exam");
+        test.addQuestion(tf);
+        test.addQuestion(mc);
+        test.addQuestion(sa);
+
+        saveResponses(test, dir, 150);
+        GradeMatrix matrix = GradeMatrix.open(test, dir);
+        assertTrue(matrix.wasRebuilt());
+        assertMatches(test, dir, matrix, 150);
+
+        // Directory times have millisecond resolution
+        sleepPastModified(dir);
+        saveResponses(test, dir, 70);
+        matrix = GradeMatrix.open(test, dir);
+        assertFalse(matrix.wasRebuilt());
+        assertEquals(70, matrix.getAppendedRowCount());
+        assertMatches(test, dir, matrix, 220);
+
+        mc.setCorrectAnswers(List.of("A"));
+        matrix = GradeMatrix.open(test, dir);
+        assertEquals(List.of(1), matrix.getRegradedQuestions());
+        assertMatches(test, dir, matrix, 220);
+    }
+
+    private void saveResponses(Test test, File dir, int count) throws IOException {
+        for (int r = 0; r < count; r++) {
+            List<List<String>> answers = new ArrayList<>();
+            for (int q = 0; q < test.size(); q++) {
+                List<String> answer = new ArrayList<>();
+                int n = random.nextInt(4);
+                for (int k = 0; k < n; k++) {
+                    answer.add(ANSWERS[random.nextInt(ANSWERS.length)]);
+                }
+                answers.add(answer);
+            }
+            new ResponseSet(test.getName(), answers).saveToUniqueFile(dir.getPath());
+        }
+    }
+
+    private static void assertMatches(Test test, File dir, GradeMatrix matrix, int rows) throws Exception {
+        assertEquals(rows, matrix.getRowCount());
+        List<TestQuestion> questions = test.getQuestions();
+        int[] correct = new int[questions.size()];
+        for (int row = 0; row < rows; row++) {
+            ResponseSet rs = ResponseSet.loadFromFile(new File(dir, matrix.getFileName(row)).getPath());
+            assertEquals(test.countCorrect(rs), matrix.getScore(row), matrix.getFileName(row));
+            for (int q = 0; q < questions.size(); q++) {
+                boolean expected = questions.get(q).isCorrect(rs.answers(q));
+                assertEquals(expected, matrix.isCorrect(row, q), matrix.getFileName(row) + " question " + q);
+                if (expected) {
+                    correct[q]++;
+                }
+            }
+        }
+        for (int q = 0; q < questions.size(); q++) {
+            assertEquals(correct[q], matrix.getCorrectCount(q), "question " + q);
+        }
+    }
+
+    private static void sleepPastModified(File dir) {
+        long modified = dir.lastModified();
+        while (System.currentTimeMillis() <= modified) {
+            Thread.onSpinWait();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the rank error of merged sketches against the exact ranks of the
+ * values fed to them.
+ */
+class KllSketchTest {
+    /** The documented 1.7% error at the default size, with headroom for randomized compaction. */
+    private static final double MAX_RANK_ERROR = 0.03;
+
+    @Test
+    void rankErrorWithinBoundAfterMerges() {
+        // Values 0..n-1, so the exact rank of value v is v + 1
+        int n = 200_000;
+        List<Double> values = new ArrayList<>(n);
+        for (int v = 0; v < n; v++) {
+            values.add((double) v);
+        }
+        Collections.shuffle(values, new Random(11));
+        // Streams of uneven size; the last is fed in sorted order
+        int[] bounds = {0, 1_000, 31_000, 90_000, 140_000, n};
+        Collections.sort(values.subList(bounds[4], n));
+        List<KllSketch> sketches = new ArrayList<>();
+        for (int s = 0; s + 1 < bounds.length; s++) {
+            KllSketch sketch = new KllSketch();
+            for (double v : values.subList(bounds[s], bounds[s + 1])) {
+                sketch.add(v);
+            }
+            sketches.add(sketch);
+        }
+        // Merge in pairs, then the pairs into the first
+        sketches.get(0).merge(sketches.get(1));
+        sketches.get(2).merge(sketches.get(3));
+        sketches.get(0).merge(sketches.get(2));
+        sketches.get(0).merge(sketches.get(4));
+        KllSketch merged = sketches.get(0);
+
+        assertEquals(n, merged.getCount());
+        for (int i = 1; i < 100; i++) {
+            double q = i / 100.0;
+            double rank = merged.quantile(q) + 1;
+            double error = Math.abs(rank - q * n) / n;
+            assertTrue(error <= MAX_RANK_ERROR, "quantile " + q + " rank error " + error);
+        }
+        assertEquals(0, merged.quantile(0), MAX_RANK_ERROR * n);
+        assertEquals(n - 1, merged.quantile(1), MAX_RANK_ERROR * n);
+    }
+
+    @Test
+    void emptySketchHasNoQuantile() {
+        assertTrue(Double.isNaN(new KllSketch().quantile(0.5)));
+    }
+
+    @Test
+    void mergeRejectsDifferentSize() {
+        KllSketch sketch = new KllSketch();
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new KllSketch(100)));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks ranks and the top of the board against sorting the latest
+ * scores, as recorded, once the log has been indexed and after a regrade.
+ */
+class LeaderboardTest {
+    private static final int QUESTIONS = 6;
+    private static final int RESPONDENTS = 80;
+
+    @TempDir
+    Path tmp;
+
+    private final Random random = new Random(3);
+    /** Response sets that were not flagged as duplicates, in save order. */
+    private final List<ResponseSet> recorded = new ArrayList<>();
+    private final List<String> fileNames = new ArrayList<>();
+
+    // Qualified, as the default package has its own Test
+    @org.junit.jupiter.api.Test
+    void rankAndTopMatchSortedScores() throws Exception {
+        File dir = tmp.toFile();
+        Test test = new Test("Exam");
+        for (int q = 0; q < QUESTIONS; q++) {
+            test.addQuestion(new TestQuestion(new TrueFalse("tf" + q), List.of(q % 2 == 0 ? "True" : "False")));
+        }
+
+        // Enough records for opening to write the index, then a tail to replay
+        submit(test, dir, 1200);
+        assertBoard(test, Leaderboard.open(dir, test));
+        submit(test, dir, 300);
+        assertBoard(test, Leaderboard.open(dir, test));
+
+        test.getQuestions().get(0).setCorrectAnswers(List.of("False"));
+        assertBoard(test, Leaderboard.open(dir, test));
+    }
+
+    private void submit(Test test, File dir, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            List<List<String>> answers = new ArrayList<>();
+            for (int q = 0; q < QUESTIONS; q++) {
+                answers.add(List.of(random.nextBoolean() ? "True" : "False"));
+            }
+            // Some anonymous response sets, ranked by file name
+            int respondent = random.nextInt(RESPONDENTS + 10);
+            String id = respondent < RESPONDENTS ? "r" + respondent : null;
+            ResponseSet rs = new ResponseSet(test.getName(), answers, test.getVersion(), null, id);
+            File file = rs.saveToUniqueFile(dir.getPath());
+            int score = Leaderboard.record(dir, test, rs, file.getName());
+            if (rs.getDuplicateOf() == null) {
+                assertEquals(test.countCorrect(rs), score);
+                recorded.add(rs);
+                fileNames.add(file.getName());
+            } else {
+                assertEquals(-1, score);
+            }
+        }
+    }
+
+    private void assertBoard(Test test, Leaderboard board) {
+        Map<String, Integer> latest = new LinkedHashMap<>();
+        for (int i = 0; i < recorded.size(); i++) {
+            ResponseSet rs = recorded.get(i);
+            String respondent = rs.getRespondentId() != null ? rs.getRespondentId() : fileNames.get(i);
+            latest.put(respondent, test.countCorrect(rs));
+        }
+        List<Integer> sorted = new ArrayList<>(latest.values());
+        sorted.sort((a, b) -> Integer.compare(b, a));
+
+        assertEquals(latest.size(), board.size());
+        for (Map.Entry<String, Integer> e : latest.entrySet()) {
+            assertEquals(e.getValue(), board.getScore(e.getKey()), e.getKey());
+            assertEquals(sorted.indexOf(e.getValue()) + 1, board.rankOf(e.getKey()), e.getKey());
+        }
+        assertEquals(-1, board.getScore("nobody"));
+        assertEquals(0, board.rankOf("nobody"));
+
+        List<Leaderboard.Entry> all = board.top(Integer.MAX_VALUE);
+        assertEquals(sorted.size(), all.size());
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < all.size(); i++) {
+            Leaderboard.Entry entry = all.get(i);
+            assertEquals(sorted.get(i), entry.getScore(), "entry " + i);
+            assertEquals(sorted.indexOf(entry.getScore()) + 1, entry.getRank(), "entry " + i);
+            assertEquals(latest.get(entry.getRespondent()), entry.getScore(), entry.getRespondent());
+            assertTrue(seen.add(entry.getRespondent()), entry.getRespondent());
+        }
+        List<Leaderboard.Entry> top = board.top(10);
+        assertEquals(10, top.size());
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(all.get(i).getRespondent(), top.get(i).getRespondent());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks lookups against the entries last put, across the table growing
+ * and across a rebuild from the response files.  Every call opens the
+ * index files afresh, so each lookup also reads back what was written.
+ */
+class ResponseIndexTest {
+    @TempDir
+    Path tmp;
+
+    @Test
+    void putThenLookUpAcrossGrowth() throws Exception {
+        File dir = tmp.toFile();
+        Map<String, String> expected = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        // Several times the initial table size, with replaced keys
+        for (int i = 0; i < 3000; i++) {
+            String key = "respondent-" + (i % 2400) + (i % 7 == 0 ? "-é" : "");
+            String file = "Exam_" + i + ".resp";
+            ResponseIndex.put(dir, "Exam", ResponseIndex.Kind.RESPONDENT, key, file);
+            expected.put(key, file);
+            order.add(key);
+        }
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.RESPONDENT, e.getKey()));
+        }
+        assertNull(ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.RESPONDENT, "nobody"));
+        assertNull(ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.CONTENT, "respondent-1"));
+        assertNull(ResponseIndex.lookup(dir, "Other", ResponseIndex.Kind.RESPONDENT, "respondent-1"));
+        assertEquals(order, ResponseIndex.keys(dir, "Exam", ResponseIndex.Kind.RESPONDENT));
+    }
+
+    @Test
+    void rebuildRestoresLatestAndFirstFiles() throws Exception {
+        File dir = tmp.toFile();
+        Random random = new Random(5);
+        Map<String, String> latest = new LinkedHashMap<>();
+        Map<String, String> first = new HashMap<>();
+        int saved = 0;
+        for (int i = 0; i < 400; i++) {
+            // Few distinct answers, so some submissions are duplicates
+            List<List<String>> answers = List.of(List.of(random.nextBoolean() ? "True" : "False"),
+                    List.of("answer " + random.nextInt(3)));
+            int respondent = random.nextInt(60);
+            String id = respondent < 50 ? "r" + respondent : null;
+            ResponseSet rs = new ResponseSet("Exam", answers, 1, null, id);
+            String file = rs.saveToUniqueFile(dir.getPath()).getName();
+            saved++;
+            if (id != null) {
+                latest.put(id, file);
+                first.putIfAbsent(rs.contentKey(), file);
+            }
+        }
+        assertIndexed(dir, latest, first);
+
+        assertEquals(saved, ResponseIndex.rebuild(dir, "Exam"));
+        assertIndexed(dir, latest, first);
+    }
+
+    private static void assertIndexed(File dir, Map<String, String> latest, Map<String, String> first)
+            throws Exception {
+        for (Map.Entry<String, String> e : latest.entrySet()) {
+            assertEquals(e.getValue(), ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.RESPONDENT, e.getKey()),
+                    e.getKey());
+        }
+        for (Map.Entry<String, String> e : first.entrySet()) {
+            assertEquals(e.getValue(), ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.CONTENT, e.getKey()),
+                    e.getKey());
+        }
+        assertNull(ResponseIndex.lookup(dir, "Exam", ResponseIndex.Kind.RESPONDENT, "r99"));
+    }
+}
\ No newline at end of file